@@ -0,0 +1,86 @@
+package com.github.sider.javasee.gradle;
+
+import com.github.sider.javasee.Finding;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.FileTree;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Checks the source files of a source set in the Gradle daemon.
+ * The task is up-to-date, or taken from the build cache, while the sources and the config file are unchanged.
+ */
+@CacheableTask
+public abstract class JavaSeeCheck extends SourceTask {
+    @InputFile
+    @PathSensitive(PathSensitivity.NONE)
+    public abstract RegularFileProperty getConfigFile();
+
+    @Input
+    public abstract Property<Boolean> getIgnoreFailures();
+
+    @OutputFile
+    public abstract RegularFileProperty getReportFile();
+
+    @Internal
+    public abstract Property<JavaSeeService> getService();
+
+    @Override
+    @InputFiles
+    @SkipWhenEmpty
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public FileTree getSource() {
+        return super.getSource();
+    }
+
+    @TaskAction
+    public void check() throws IOException {
+        var rules = getService().get().getRuleSet(getConfigFile().get().getAsFile());
+        var projectDirectory = getProject().getProjectDir().toPath();
+
+        // RuleSet is thread-safe, so the files are checked in parallel
+        var lines = getSource().getFiles().parallelStream().flatMap(file -> {
+            var findings = new ArrayList<Finding>();
+            try {
+                rules.analyze(file.toPath(), findings::add);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new GradleException("Interrupted while checking " + file, e);
+            }
+            var path = projectDirectory.relativize(file.toPath().toAbsolutePath()).toString();
+            return findings.stream().map(finding -> format(path, finding));
+        }).collect(Collectors.toList());
+        Collections.sort(lines);
+
+        var report = getReportFile().get().getAsFile();
+        Files.createDirectories(report.toPath().getParent());
+        Files.write(report.toPath(), lines, StandardCharsets.UTF_8);
+        if(!lines.isEmpty()) {
+            var message = "JavaSee found " + lines.size() + " issue(s). See the report at " + report;
+            if(getIgnoreFailures().get()) {
+                getLogger().warn(message);
+            } else {
+                throw new GradleException(message);
+            }
+        }
+    }
+
+    private static String format(String path, Finding finding) {
+        var begin = finding.getBegin();
+        var message = finding.rule.message.split("\n")[0];
+        return path + ":" + begin.line + ":" + begin.column + "\t" + message + "(" + finding.rule.id + ")";
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.sider.javasee.gradle;
+
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+
+/**
+ * The `javasee { }` block of build scripts
+ */
+public abstract class JavaSeeExtension {
+    /**
+     * Config YAML file, `javasee.yml` in the root project by default
+     */
+    public abstract RegularFileProperty getConfigFile();
+
+    /**
+     * Whether the build continues when issues are found, false by default
+     */
+    public abstract Property<Boolean> getIgnoreFailures();
+}
@@ -0,0 +1,49 @@
+package com.github.sider.javasee.gradle;
+
+import org.gradle.api.Plugin;
+import org.gradle.api.Project;
+import org.gradle.api.plugins.JavaBasePlugin;
+import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.tasks.SourceSetContainer;
+
+/**
+ * Adds a `javasee<SourceSet>` task for each source set, e.g. `javaseeMain`, and a `javasee` task running all of
+ * them, which `check` depends on.
+ * The compiled rules are cached in a build service shared by all projects of the build.
+ */
+public class JavaSeePlugin implements Plugin<Project> {
+    public static final String TASK_NAME = "javasee";
+
+    @Override
+    public void apply(Project project) {
+        var extension = project.getExtensions().create("javasee", JavaSeeExtension.class);
+        extension.getConfigFile().convention(project.getRootProject().getLayout().getProjectDirectory().file("javasee.yml"));
+        extension.getIgnoreFailures().convention(false);
+
+        var service = project.getGradle().getSharedServices().registerIfAbsent("javasee", JavaSeeService.class, spec -> {});
+
+        var all = project.getTasks().register(TASK_NAME, task -> {
+            task.setGroup(JavaBasePlugin.VERIFICATION_GROUP);
+            task.setDescription("Checks all source sets with JavaSee.");
+        });
+
+        project.getPlugins().withType(JavaPlugin.class, javaPlugin -> {
+            var sourceSets = project.getExtensions().getByType(SourceSetContainer.class);
+            sourceSets.all(sourceSet -> {
+                var name = sourceSet.getTaskName(TASK_NAME, null);
+                var task = project.getTasks().register(name, JavaSeeCheck.class, check -> {
+                    check.setGroup(JavaBasePlugin.VERIFICATION_GROUP);
+                    check.setDescription("Checks the " + sourceSet.getName() + " sources with JavaSee.");
+                    check.setSource(sourceSet.getAllJava());
+                    check.getConfigFile().set(extension.getConfigFile());
+                    check.getIgnoreFailures().set(extension.getIgnoreFailures());
+                    check.getReportFile().set(project.getLayout().getBuildDirectory().file("reports/javasee/" + sourceSet.getName() + ".txt"));
+                    check.getService().set(service);
+                    check.usesService(service);
+                });
+                all.configure(t -> t.dependsOn(task));
+            });
+            project.getTasks().named(JavaBasePlugin.CHECK_TASK_NAME).configure(check -> check.dependsOn(all));
+        });
+    }
+}
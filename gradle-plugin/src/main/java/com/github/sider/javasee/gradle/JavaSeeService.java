@@ -0,0 +1,39 @@
+package com.github.sider.javasee.gradle;
+
+import com.github.sider.javasee.RuleSet;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles each config file once per build, and shares the RuleSet among the tasks of all projects.
+ * Gradle closes the service at the end of the build, which releases the type solvers of the RuleSets.
+ */
+public abstract class JavaSeeService implements BuildService<BuildServiceParameters.None>, AutoCloseable {
+    private final Map<List<Object>, RuleSet> ruleSets = new ConcurrentHashMap<>();
+
+    public RuleSet getRuleSet(File configFile) {
+        // the file may be regenerated by another task during the build
+        var key = List.<Object>of(configFile.getAbsolutePath(), configFile.lastModified(), configFile.length());
+        return ruleSets.computeIfAbsent(key, k -> {
+            try {
+                return RuleSet.fromYaml(Files.readString(configFile.toPath()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        ruleSets.values().forEach(RuleSet::close);
+        ruleSets.clear();
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.sider.javasee.gradle;
+
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JavaSeePluginTest {
+    private static Project project() throws Exception {
+        var dir = Files.createTempDirectory("javasee").toFile();
+        var project = ProjectBuilder.builder().withProjectDir(dir).build();
+        project.getPluginManager().apply("java");
+        project.getPluginManager().apply("com.github.sider.javasee");
+        return project;
+    }
+
+    @Test
+    public void testTasksForSourceSets() throws Exception {
+        var project = project();
+        var main = (JavaSeeCheck)project.getTasks().getByName("javaseeMain");
+        var test = (JavaSeeCheck)project.getTasks().getByName("javaseeTest");
+        assertEquals(new File(project.getProjectDir(), "javasee.yml"), main.getConfigFile().get().getAsFile());
+        assertEquals(project.getLayout().getBuildDirectory().file("reports/javasee/test.txt").get().getAsFile(), test.getReportFile().get().getAsFile());
+        assertTrue(project.getTasks().getByName("javasee").getTaskDependencies().getDependencies(null).contains(main));
+    }
+
+    @Test
+    public void testCheck() throws Exception {
+        var project = project();
+        var dir = project.getProjectDir();
+        Files.writeString(new File(dir, "javasee.yml").toPath(), "rules:\n  - id: check-println\n    pattern: _.println(...)\n    message: println() is detected\n");
+        new File(dir, "src/main/java").mkdirs();
+        Files.writeString(new File(dir, "src/main/java/A.java").toPath(), "class A { void f() { System.out.println(); } }");
+
+        var task = (JavaSeeCheck)project.getTasks().getByName("javaseeMain");
+        task.getIgnoreFailures().set(true);
+        task.check();
+        assertEquals(
+                "src/main/java/A.java:1:22\tprintln() is detected(check-println)\n",
+                Files.readString(task.getReportFile().get().getAsFile().toPath())
+        );
+    }
+}
@@ -1,8 +1,8 @@
 package com.github.sider.javasee;
 
 import com.github.sider.javasee.ast.AST;
+import com.github.sider.javasee.ast.TypeResolver;
 import com.github.sider.javasee.lib.Tuple3;
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 
 import java.util.List;
@@ -10,26 +10,64 @@ import java.util.Set;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
-@AllArgsConstructor
 @Getter
 public class Analyzer {
     public final Config config;
     public final String rule;
     public final List<JavaFile> javaFiles;
 
+    /**
+     * Cost accounting of the rules if config has rule_budget, or null
+     */
+    private final RuleBudget.Cost ruleCost;
+
+    /**
+     * Statistics to evaluate the patterns of each rule in the adaptive order, or null to evaluate them in the given
+     * order
+     */
+    private final PatternStats patternStats;
+
+    public Analyzer(Config config, String rule, List<JavaFile> javaFiles) {
+        this(config, rule, javaFiles, false);
+    }
+
+    /**
+     * @param learnsPatternOrder whether to collect PatternStats, which costs sampling nodes and reordering patterns
+     */
+    public Analyzer(Config config, String rule, List<JavaFile> javaFiles, boolean learnsPatternOrder) {
+        this.config = config;
+        this.rule = rule;
+        this.javaFiles = javaFiles;
+        this.ruleCost = config != null && config.ruleBudget != null ? new RuleBudget.Cost(config.ruleBudget, config.rules) : null;
+        this.patternStats = config != null && learnsPatternOrder ? new PatternStats(config.rules) : null;
+    }
+
     public void run(Consumer<Tuple3<JavaFile, Rule, NodePair>> consumer) {
         for(JavaFile javaFile: this.javaFiles) {
-            javaFile.rootPair().eachSubPair((nodePair) -> {
-                for (var rule: config.rules) {
-                    if(rule.patterns.stream().anyMatch((pattern) -> testPair(nodePair, pattern))) {
-                        consumer.accept(new Tuple3<>(javaFile, rule, nodePair));
-                    }
-                }
+            run(javaFile, consumer);
+        }
+    }
+
+    /**
+     * Checks a single file, which needs not be in javaFiles
+     */
+    public void run(JavaFile javaFile, Consumer<Tuple3<JavaFile, Rule, NodePair>> consumer) {
+        run(javaFile, javaFile.rootPair(), consumer);
+    }
+
+    /**
+     * Checks a single file already parsed into root
+     */
+    public void run(JavaFile javaFile, NodePair root, Consumer<Tuple3<JavaFile, Rule, NodePair>> consumer) {
+        try(var scope = TypeResolver.use(config.typeResolver)) {
+            RuleSet.match(javaFile.path.getPath(), config.rules, config.contextPredicates, ruleCost, patternStats, root, (rule, nodePair) -> {
+                consumer.accept(new Tuple3<>(javaFile, rule, nodePair));
+                return true;
             });
         }
     }
 
-    public void find(AST.Expression pattern, BiConsumer<JavaFile, NodePair> consumer) {
+    public void find(AST.PatternNode pattern, BiConsumer<JavaFile, NodePair> consumer) {
         for(var script: javaFiles) {
             script.rootPair().eachSubPair((nodePair) -> {
                 if(testPair(nodePair, pattern)) {
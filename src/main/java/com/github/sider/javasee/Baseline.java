@@ -0,0 +1,176 @@
+package com.github.sider.javasee;
+
+import com.github.javaparser.ast.Node;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Fingerprints of accepted findings, to report only new findings.
+ *
+ * A fingerprint is a 64-bit hash of the rule id, the path relative to the root directory, the source of the matched
+ * node without whitespace, and the number of the same findings before it in the file.  So it survives lines added or
+ * removed around the finding.  The file is {@code "JSBL"}, a version, the number of fingerprints, and the sorted
+ * fingerprints, all big endian.  They are loaded into an open-addressed hash table with linear probing.
+ */
+public class Baseline {
+    private static final int MAGIC = 0x4a53424c;
+    private static final int VERSION = 1;
+
+    /**
+     * Marks an empty slot.  A fingerprint of this value is stored as EMPTY + 1
+     */
+    private static final long EMPTY = 0;
+
+    private final long[] table;
+    private final int mask;
+    private final int size;
+
+    private Baseline(long[] fingerprints) {
+        // keeps the load factor at most 1/2
+        int capacity = Integer.highestOneBit(Math.max(2, fingerprints.length) * 2 - 1) * 2;
+        this.table = new long[capacity];
+        this.mask = capacity - 1;
+        int size = 0;
+        for(var fingerprint:fingerprints) {
+            if(add(normalize(fingerprint))) size++;
+        }
+        this.size = size;
+    }
+
+    public static Baseline of(long[] fingerprints) {
+        return new Baseline(fingerprints);
+    }
+
+    public static Baseline load(Path path) throws IOException {
+        try(var input = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if(input.readInt() != MAGIC || input.readInt() != VERSION) {
+                throw new Exceptions.InvalidInputException("Not a baseline file: " + path);
+            }
+            var fingerprints = new long[input.readInt()];
+            for(int i = 0; i < fingerprints.length; i++) {
+                fingerprints[i] = input.readLong();
+            }
+            return new Baseline(fingerprints);
+        } catch (EOFException e) {
+            throw new Exceptions.InvalidInputException("Baseline file is truncated: " + path);
+        }
+    }
+
+    /**
+     * Writes the fingerprints sorted, removing duplicates
+     */
+    public static void write(Path path, long[] fingerprints) throws IOException {
+        var sorted = Arrays.stream(fingerprints).sorted().distinct().toArray();
+        try(var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(sorted.length);
+            for(var fingerprint:sorted) {
+                output.writeLong(fingerprint);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(long fingerprint) {
+        fingerprint = normalize(fingerprint);
+        for(int i = slot(fingerprint); ; i = (i + 1) & mask) {
+            var value = table[i];
+            if(value == fingerprint) return true;
+            if(value == EMPTY) return false;
+        }
+    }
+
+    private boolean add(long fingerprint) {
+        for(int i = slot(fingerprint); ; i = (i + 1) & mask) {
+            var value = table[i];
+            if(value == fingerprint) return false;
+            if(value == EMPTY) {
+                table[i] = fingerprint;
+                return true;
+            }
+        }
+    }
+
+    private static long normalize(long fingerprint) {
+        return fingerprint == EMPTY ? EMPTY + 1 : fingerprint;
+    }
+
+    private int slot(long fingerprint) {
+        // fingerprints are hashes already, but the upper bits are mixed in for sequential values
+        return (int)(fingerprint ^ (fingerprint >>> 32)) & mask;
+    }
+
+    /**
+     * Computes fingerprints of the findings of a file in the order they are found
+     */
+    public static class Fingerprinter {
+        private final String path;
+        private final Map<Long, Integer> occurrences = new HashMap<>();
+
+        /**
+         * @param path path of the file relative to the root directory
+         */
+        public Fingerprinter(String path) {
+            this.path = path;
+        }
+
+        public long fingerprint(JavaFile file, Rule rule, Node node) {
+            var hash = hash(FNV_OFFSET, rule.id);
+            hash = hash(hash, path);
+            hash = hash(hash, snippet(file, node));
+            var occurrence = occurrences.merge(hash, 1, Integer::sum);
+            return hash(hash, String.valueOf(occurrence));
+        }
+    }
+
+    /**
+     * Source of the node without whitespace
+     */
+    static String snippet(JavaFile file, Node node) {
+        var range = node.getRange();
+        if(!range.isPresent()) return "";
+        var begin = range.get().begin;
+        var end = range.get().end;
+        var builder = new StringBuilder();
+        for(int line = begin.line; line <= end.line; line++) {
+            var text = file.getLine(line);
+            int from = line == begin.line ? Math.min(begin.column - 1, text.length()) : 0;
+            int to = line == end.line ? Math.min(end.column, text.length()) : text.length();
+            for(int i = from; i < to; i++) {
+                var ch = text.charAt(i);
+                if(!Character.isWhitespace(ch)) builder.append(ch);
+            }
+        }
+        return builder.toString();
+    }
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * 64-bit FNV-1a of UTF-8 bytes followed by a separator, which doesn't depend on JVM implementation
+     */
+    private static long hash(long hash, String value) {
+        for(byte b:value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= FNV_PRIME;
+        }
+        hash ^= 0xff;
+        return hash * FNV_PRIME;
+    }
+}
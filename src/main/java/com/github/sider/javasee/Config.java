@@ -1,10 +1,13 @@
 package com.github.sider.javasee;
 
+import com.github.sider.javasee.ast.ContextSummary;
+import com.github.sider.javasee.ast.TypeResolver;
 import com.github.sider.javasee.lib.Extentions;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
 import java.io.File;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -12,9 +15,49 @@ public class Config {
     public final List<Rule> rules;
     public final File rootDirectory;
 
+    /**
+     * Patterns of files and directories to skip, in .gitignore syntax relative to rootDirectory
+     */
+    public final List<String> excludes;
+
+    /**
+     * Limits of match time of each rule, or null
+     */
+    public final RuleBudget ruleBudget;
+
+    /**
+     * Resolves types for typed patterns
+     */
+    public final TypeResolver typeResolver;
+
+    /**
+     * Context predicates of the patterns of rules, interned once for all files
+     */
+    public final ContextSummary.Predicates contextPredicates;
+
     public Config(List<Rule> rules, File rootDirectory) {
+        this(rules, rootDirectory, List.of());
+    }
+
+    public Config(List<Rule> rules, File rootDirectory, List<String> excludes) {
+        this(rules, rootDirectory, excludes, null);
+    }
+
+    public Config(List<Rule> rules, File rootDirectory, List<String> excludes, RuleBudget ruleBudget) {
+        this(rules, rootDirectory, excludes, ruleBudget, TypeResolver.DEFAULT);
+    }
+
+    public Config(List<Rule> rules, File rootDirectory, List<String> excludes, RuleBudget ruleBudget, TypeResolver typeResolver) {
         this.rules = rules;
         this.rootDirectory = rootDirectory;
+        this.excludes = excludes;
+        this.ruleBudget = ruleBudget;
+        this.typeResolver = typeResolver;
+        this.contextPredicates = contextPredicates(rules);
+    }
+
+    static ContextSummary.Predicates contextPredicates(List<Rule> rules) {
+        return ContextSummary.predicates(rules.stream().flatMap(rule -> rule.patterns.stream()).collect(Collectors.toList()));
     }
 
     public static Config load(Map<String, Object> map, File configPath, File rootDirectory) {
@@ -34,7 +77,37 @@ public class Config {
                 throw new Exceptions.MissingKeyException("rules");
             }
             var rules = Extentions.single(object).stream().map(map -> Rule.load((Map<String, Object>)map)).collect(Collectors.toList());
-            return new Config(rules, rootDirectory);
+            var excludes = Extentions.single(yaml.get("exclude"));
+            if(!excludes.stream().allMatch(v -> v instanceof String)) {
+                throw new Exceptions.InvalidTypeException("exclude should be String or List<String>.  However, it's " + yaml.get("exclude"));
+            }
+            var ruleBudget = yaml.containsKey("rule_budget") ? RuleBudget.load(yaml.get("rule_budget")) : null;
+            var typeResolver = yaml.containsKey("types") ? typeResolver(yaml.get("types")) : TypeResolver.DEFAULT;
+            return new Config(rules, rootDirectory, (List<String>)excludes, ruleBudget, typeResolver);
+        }
+
+        /**
+         * Reads `source_roots` and `classpath`, relative to the root directory
+         */
+        private TypeResolver typeResolver(Object types) {
+            if(!(types instanceof Map<?, ?>)) {
+                throw new Exceptions.InvalidTypeException("types should be a Map.  However, it's " + types);
+            }
+            var map = (Map<String, Object>)types;
+            var knownKeys = Set.of("source_roots", "classpath");
+            if(!knownKeys.containsAll(map.keySet())) {
+                throw new Exceptions.UnknownKeysException(map.keySet(), knownKeys);
+            }
+            var base = (rootDirectory != null ? rootDirectory : new File(".")).toPath();
+            return new TypeResolver(paths(base, map, "source_roots"), paths(base, map, "classpath"));
+        }
+
+        private static List<Path> paths(Path base, Map<String, Object> map, String key) {
+            var values = Extentions.single(map.get(key));
+            if(!values.stream().allMatch(v -> v instanceof String)) {
+                throw new Exceptions.InvalidTypeException(key + " should be String or List<String>.  However, it's " + map.get(key));
+            }
+            return values.stream().map(v -> base.resolve((String)v)).collect(Collectors.toList());
         }
     }
 }
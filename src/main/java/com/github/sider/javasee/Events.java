@@ -0,0 +1,124 @@
+package com.github.sider.javasee;
+
+import jdk.jfr.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Java Flight Recorder events of analysis phases.
+ * They are recorded by `check -jfr <file>`, or by any recording started with -XX:StartFlightRecording.
+ */
+public class Events {
+    public static final List<Class<? extends Event>> EVENT_CLASSES = List.of(
+            ConfigLoad.class, FileEnumeration.class, FileRead.class, Parse.class, RuleMatch.class, IssueEmission.class
+    );
+
+    /**
+     * Starts a recording of the events of JavaSee, which is written to `destination` when closed
+     */
+    public static Recording startRecording(Path destination) throws IOException {
+        var recording = new Recording();
+        recording.setName("JavaSee");
+        for(var eventClass:EVENT_CLASSES) {
+            recording.enable(eventClass).withoutThreshold();
+        }
+        recording.setDestination(destination);
+        recording.start();
+        return recording;
+    }
+
+    @Name("com.github.sider.javasee.ConfigLoad")
+    @Label("Config Load")
+    @Category("JavaSee")
+    public static class ConfigLoad extends Event {
+        @Label("Path")
+        public String path;
+
+        @Label("Rule Count")
+        public int ruleCount;
+    }
+
+    @Name("com.github.sider.javasee.FileEnumeration")
+    @Label("File Enumeration")
+    @Category("JavaSee")
+    public static class FileEnumeration extends Event {
+        @Label("Roots")
+        public String roots;
+
+        @Label("File Count")
+        public int fileCount;
+    }
+
+    @Name("com.github.sider.javasee.FileRead")
+    @Label("File Read")
+    @Category("JavaSee")
+    public static class FileRead extends Event {
+        @Label("Path")
+        public String path;
+
+        @Label("Size")
+        @DataAmount
+        public long size;
+
+        @Label("Memory Mapped")
+        public boolean mapped;
+    }
+
+    @Name("com.github.sider.javasee.Parse")
+    @Label("Parse")
+    @Category("JavaSee")
+    public static class Parse extends Event {
+        @Label("Path")
+        public String path;
+
+        @Label("Characters")
+        public long characters;
+
+        @Label("Node Count")
+        public int nodeCount;
+    }
+
+    /**
+     * Matching of a rule against all nodes of a file.
+     * Nodes are matched against all rules one by one, so the time spent for the rule is summed up in matchTime
+     * rather than the duration of the event.
+     */
+    @Name("com.github.sider.javasee.RuleMatch")
+    @Label("Rule Match")
+    @Category("JavaSee")
+    @StackTrace(false)
+    public static class RuleMatch extends Event {
+        @Label("Path")
+        public String path;
+
+        @Label("Rule ID")
+        public String ruleId;
+
+        @Label("Node Count")
+        public int nodeCount;
+
+        @Label("Match Count")
+        public int matchCount;
+
+        @Label("Match Time")
+        @Timespan(Timespan.NANOSECONDS)
+        public long matchTime;
+    }
+
+    @Name("com.github.sider.javasee.IssueEmission")
+    @Label("Issue Emission")
+    @Category("JavaSee")
+    @StackTrace(false)
+    public static class IssueEmission extends Event {
+        @Label("Path")
+        public String path;
+
+        @Label("Rule ID")
+        public String ruleId;
+
+        @Label("Line")
+        public int line;
+    }
+}
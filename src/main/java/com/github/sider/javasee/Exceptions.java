@@ -1,5 +1,6 @@
 package com.github.sider.javasee;
 
+import java.time.Duration;
 import java.util.Collection;
 
 public class Exceptions {
@@ -39,6 +40,39 @@ public class Exceptions {
         }
     }
 
+    public static class InvalidOptionException extends JavaSeeException {
+        public InvalidOptionException(String message) {
+            super(message);
+        }
+    }
+
+    public static class InvalidInputException extends JavaSeeException {
+        public InvalidInputException(String message) {
+            super(message);
+        }
+    }
+
+    public static class SourceParseException extends JavaSeeException {
+        public SourceParseException(String message) {
+            super(message);
+        }
+    }
+
+    public static class FileTimeoutException extends JavaSeeException {
+        public FileTimeoutException(String path, long size, Duration elapsed) {
+            super("Analysis timed out after " + (elapsed.toMillis() / 1000.0) + "s: " + path + " (" + size + " bytes)");
+        }
+    }
+
+    /**
+     * Thrown in the thread analyzing a file when it is interrupted
+     */
+    public static class AnalysisCancelledException extends JavaSeeException {
+        public AnalysisCancelledException(String path) {
+            super("Analysis cancelled: " + path);
+        }
+    }
+
     public static class UnknownKeysException extends YamlValidationException {
         public UnknownKeysException(Collection<String> actualKeys, Collection<String> allowedKeys) {
             super("Unknown keys: " + actualKeys + ", only " + allowedKeys + " are allowed");
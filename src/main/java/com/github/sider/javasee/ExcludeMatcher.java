@@ -0,0 +1,227 @@
+package com.github.sider.javasee;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Decides which files and directories are skipped while enumerating java files.
+ *
+ * Patterns follow the syntax of .gitignore: `#` comments, `!` negations, trailing `/` for directories,
+ * leading or middle `/` for anchoring, and `*`, `?`, `[...]` and `**` wildcards.
+ * A matcher is a chain of frames, one for each ignore file (and for the default and the configured patterns).
+ * Patterns of a frame are compiled into one regular expression, and deeper frames take precedence as git does.
+ */
+public class ExcludeMatcher {
+    public static final List<String> IGNORE_FILE_NAMES = List.of(".gitignore", ".javaseeignore");
+
+    public static final List<String> DEFAULT_EXCLUDES = List.of(".git/", ".hg/", ".svn/", "build/", "node_modules/");
+
+    private final ExcludeMatcher parent;
+
+    /**
+     * Absolute path of the directory which patterns are relative to
+     */
+    private final Path base;
+
+    /**
+     * Alternation of the patterns in reverse order, so that the last matching pattern wins
+     */
+    private final Pattern filePattern;
+    private final boolean[] fileNegations;
+    private final Pattern directoryPattern;
+    private final boolean[] directoryNegations;
+
+    private ExcludeMatcher(ExcludeMatcher parent, Path base, List<String> lines) {
+        this.parent = parent;
+        this.base = base;
+
+        var filePatterns = new ArrayList<String>();
+        var fileNegations = new ArrayList<Boolean>();
+        var directoryPatterns = new ArrayList<String>();
+        var directoryNegations = new ArrayList<Boolean>();
+        for(int i = lines.size() - 1; i >= 0; i--) {
+            var line = trim(lines.get(i));
+            if(line.isEmpty() || line.startsWith("#")) continue;
+            var negated = line.startsWith("!");
+            if(negated) line = line.substring(1);
+            var directoryOnly = line.endsWith("/");
+            if(directoryOnly) line = line.substring(0, line.length() - 1);
+            if(line.isEmpty()) continue;
+
+            var regex = toRegex(line);
+            directoryPatterns.add(regex);
+            directoryNegations.add(negated);
+            if(!directoryOnly) {
+                filePatterns.add(regex);
+                fileNegations.add(negated);
+            }
+        }
+        this.filePattern = alternation(filePatterns);
+        this.fileNegations = toArray(fileNegations);
+        this.directoryPattern = alternation(directoryPatterns);
+        this.directoryNegations = toArray(directoryNegations);
+    }
+
+    /**
+     * Creates a matcher to walk `root` with the default patterns, `excludes` (relative to `rootDirectory`), and
+     * the ignore files in the ancestor directories of `root` up to the top of the git working tree
+     */
+    public static ExcludeMatcher forRoot(Path root, File rootDirectory, List<String> excludes) {
+        root = root.toAbsolutePath().normalize();
+        var configBase = (rootDirectory != null ? rootDirectory : new File(".")).toPath().toAbsolutePath().normalize();
+        var matcher = new ExcludeMatcher(null, root, DEFAULT_EXCLUDES).withPatterns(configBase, excludes);
+
+        if(Files.exists(root.resolve(".git"))) return matcher;
+        var ancestors = new ArrayList<Path>();
+        for(var directory = root.getParent(); directory != null; directory = directory.getParent()) {
+            ancestors.add(0, directory);
+            if(Files.exists(directory.resolve(".git"))) {
+                for(var ancestor:ancestors) {
+                    matcher = matcher.enter(ancestor, IGNORE_FILE_NAMES);
+                }
+                break;
+            }
+        }
+        return matcher;
+    }
+
+    public ExcludeMatcher withPatterns(Path base, List<String> patterns) {
+        if(patterns.isEmpty()) return this;
+        return new ExcludeMatcher(this, base, patterns);
+    }
+
+    /**
+     * Returns the matcher for the entries of `directory`, reading the ignore files included in `childNames`
+     */
+    public ExcludeMatcher enter(Path directory, Collection<String> childNames) {
+        var matcher = this;
+        for(var name:IGNORE_FILE_NAMES) {
+            if(!childNames.contains(name)) continue;
+            try {
+                matcher = matcher.withPatterns(directory, Files.readAllLines(directory.resolve(name), StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                // unreadable ignore file is not an error
+            }
+        }
+        return matcher;
+    }
+
+    /**
+     * @param path absolute path
+     */
+    public boolean isExcluded(Path path, boolean directory) {
+        for(var matcher = this; matcher != null; matcher = matcher.parent) {
+            var pattern = directory ? matcher.directoryPattern : matcher.filePattern;
+            if(pattern == null || !path.startsWith(matcher.base) || path.equals(matcher.base)) continue;
+            var relative = matcher.base.relativize(path).toString().replace(File.separatorChar, '/');
+            var m = pattern.matcher(relative);
+            if(m.matches()) {
+                var negations = directory ? matcher.directoryNegations : matcher.fileNegations;
+                for(int i = 0; i < negations.length; i++) {
+                    if(m.start(i + 1) >= 0) return !negations[i];
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes trailing spaces unless they are escaped with backslash
+     */
+    private static String trim(String line) {
+        int end = line.length();
+        while(end > 0 && line.charAt(end - 1) == ' ' && !(end > 1 && line.charAt(end - 2) == '\\')) {
+            end--;
+        }
+        return line.substring(0, end);
+    }
+
+    static String toRegex(String glob) {
+        // A pattern with a slash at the beginning or middle is relative to the base directory,
+        // otherwise it matches at any level below the base directory
+        var anchored = glob.contains("/");
+        if(glob.startsWith("/")) glob = glob.substring(1);
+        var regex = new StringBuilder(anchored ? "" : "(?:.*/)?");
+        int length = glob.length();
+        for(int i = 0; i < length; i++) {
+            char ch = glob.charAt(i);
+            switch(ch) {
+                case '*':
+                    var wholeSegment = i + 1 < length && glob.charAt(i + 1) == '*' &&
+                            (i == 0 || glob.charAt(i - 1) == '/') &&
+                            (i + 2 == length || glob.charAt(i + 2) == '/');
+                    if(wholeSegment && i + 2 == length) {
+                        // trailing `**` matches everything inside
+                        regex.append(".*");
+                        i += 1;
+                    } else if(wholeSegment) {
+                        // `**/` matches zero or more directories
+                        regex.append("(?:.*/)?");
+                        i += 2;
+                    } else {
+                        regex.append("[^/]*");
+                    }
+                    break;
+                case '?':
+                    regex.append("[^/]");
+                    break;
+                case '[':
+                    int close = glob.indexOf(']', i + 2);
+                    if(close < 0) {
+                        regex.append("\\[");
+                        break;
+                    }
+                    // the nested class keeps a negation from applying to the intersection
+                    regex.append("[[");
+                    int j = i + 1;
+                    if(glob.charAt(j) == '!' || glob.charAt(j) == '^') {
+                        regex.append('^');
+                        j++;
+                    }
+                    for(; j < close; j++) {
+                        char c = glob.charAt(j);
+                        if(c == '\\' || c == '[' || c == '&') regex.append('\\');
+                        regex.append(c);
+                    }
+                    regex.append("]&&[^/]]");
+                    i = close;
+                    break;
+                case '\\':
+                    if(i + 1 < length) {
+                        i++;
+                        ch = glob.charAt(i);
+                    }
+                    // fall through to append the escaped character literally
+                default:
+                    if("\\.[]{}()<>*+-=!?^$|".indexOf(ch) >= 0) regex.append('\\');
+                    regex.append(ch);
+            }
+        }
+        return regex.toString();
+    }
+
+    private static Pattern alternation(List<String> regexes) {
+        if(regexes.isEmpty()) return null;
+        var builder = new StringBuilder();
+        for(var regex:regexes) {
+            if(builder.length() > 0) builder.append('|');
+            builder.append('(').append(regex).append(')');
+        }
+        return Pattern.compile(builder.toString());
+    }
+
+    private static boolean[] toArray(List<Boolean> values) {
+        var result = new boolean[values.size()];
+        for(int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.sider.javasee;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs the analysis of each file on a worker thread with a time budget, for `check -file-timeout`.
+ *
+ * When the budget is exceeded, the worker is interrupted and the caller continues with the next file.
+ * The interrupt is checked by the reader feeding the parser and by the matching loop, so that the abandoned work
+ * stops soon instead of consuming CPU until the end of the run.
+ */
+public class FileWatchdog implements AutoCloseable {
+    public final Duration timeout;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        var thread = new Thread(runnable, "javasee-file-worker");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public FileWatchdog(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    public <T> T run(JavaFile script, Callable<T> task) {
+        var start = System.nanoTime();
+        var future = executor.submit(task);
+        try {
+            return future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new Exceptions.FileTimeoutException(script.path.getPath(), script.size(), Duration.ofNanos(System.nanoTime() - start));
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException) throw (RuntimeException)e.getCause();
+            if(e.getCause() instanceof Error) throw (Error)e.getCause();
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new Exceptions.AnalysisCancelledException(script.path.getPath());
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
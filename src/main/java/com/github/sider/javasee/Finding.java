@@ -0,0 +1,29 @@
+package com.github.sider.javasee;
+
+import com.github.javaparser.Position;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * A node matched by a rule, reported by {@link RuleSet}
+ */
+@AllArgsConstructor
+@Getter
+@ToString
+public class Finding {
+    /**
+     * Path of the source, or null if the source is not a file
+     */
+    public final String path;
+    public final Rule rule;
+    public final NodePair pair;
+
+    public Position getBegin() {
+        return pair.node.getRange().map(range -> range.begin).orElse(null);
+    }
+
+    public Position getEnd() {
+        return pair.node.getRange().map(range -> range.end).orElse(null);
+    }
+}
@@ -0,0 +1,26 @@
+package com.github.sider.javasee;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Receives findings from {@link RuleSet}.
+ * The analysis runs on the caller's thread and waits while accept is running, so that a slow sink throttles the
+ * analysis instead of letting findings pile up.
+ */
+@FunctionalInterface
+public interface FindingSink {
+    /**
+     * @return false to stop analyzing the current source
+     */
+    boolean accept(Finding finding) throws InterruptedException;
+
+    /**
+     * Returns a sink which puts findings into the queue, waiting for space if the queue is bounded and full
+     */
+    static FindingSink of(BlockingQueue<? super Finding> queue) {
+        return (finding) -> {
+            queue.put(finding);
+            return true;
+        };
+    }
+}
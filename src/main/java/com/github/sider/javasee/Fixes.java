@@ -0,0 +1,143 @@
+package com.github.sider.javasee;
+
+import com.github.javaparser.ast.Node;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Rewrites the code matched by the rules having `fix`.
+ * Edits of a file are collected from its issues, and applied as splices of the original source, so that the code
+ * outside of the edits is kept as it is.
+ */
+public class Fixes {
+    /**
+     * Replaces the characters in [start, end) of the source
+     */
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    @ToString
+    public static class Edit {
+        public final int start;
+        public final int end;
+        public final String replacement;
+        public final String ruleId;
+    }
+
+    private static final Comparator<Edit> ORDER = Comparator.<Edit>comparingInt(edit -> edit.start)
+            .thenComparing(Comparator.<Edit>comparingInt(edit -> edit.end).reversed())
+            .thenComparing(edit -> edit.ruleId)
+            .thenComparing(edit -> edit.replacement);
+
+    /**
+     * Returns the edit fixing the issue, or empty if the rule has no fix
+     */
+    public static Optional<Edit> edit(JavaFile file, Rule rule, NodePair pair) {
+        if(rule.fix == null || !pair.node.getRange().isPresent()) return Optional.empty();
+        for(var pattern:rule.patterns) {
+            var bindings = pattern.bindings(pair);
+            if(bindings == null) continue;
+            var range = pair.node.getRange().get();
+            return Optional.of(new Edit(
+                    file.offsetOf(range.begin.line, range.begin.column),
+                    file.offsetOf(range.end.line, range.end.column) + 1,
+                    render(file, rule.fix, bindings),
+                    rule.id
+            ));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Replaces {@code $name} in the template with the source of the node bound to the metavariable, and {@code $$}
+     * with {@code $}.  Names not bound are left as they are.
+     */
+    static String render(JavaFile file, String template, Map<String, Node> bindings) {
+        var result = new StringBuilder();
+        for(int i = 0; i < template.length(); i++) {
+            var ch = template.charAt(i);
+            if(ch != '$') {
+                result.append(ch);
+                continue;
+            }
+            if(i + 1 < template.length() && template.charAt(i + 1) == '$') {
+                result.append('$');
+                i++;
+                continue;
+            }
+            int end = i + 1;
+            while(end < template.length() && Character.isJavaIdentifierPart(template.charAt(end))) end++;
+            var bound = bindings.get(template.substring(i + 1, end));
+            if(bound == null || !bound.getRange().isPresent()) {
+                result.append(ch);
+                continue;
+            }
+            var range = bound.getRange().get();
+            result.append(file.getSource(), file.offsetOf(range.begin.line, range.begin.column), file.offsetOf(range.end.line, range.end.column) + 1);
+            i = end - 1;
+        }
+        return result.toString();
+    }
+
+    /**
+     * Returns the edits to apply in order of their positions.  Of overlapping edits, the one starting first wins,
+     * and the outer one wins if they start at the same position, so that the result doesn't depend on the order of
+     * the issues.  Duplicated edits are applied once.
+     */
+    public static List<Edit> resolve(List<Edit> edits) {
+        var sorted = new ArrayList<>(edits);
+        sorted.sort(ORDER);
+        var result = new ArrayList<Edit>();
+        int end = 0;
+        for(var edit:sorted) {
+            if(edit.start < end) continue;
+            result.add(edit);
+            end = edit.end;
+        }
+        return result;
+    }
+
+    /**
+     * Applies the edits returned by resolve to the source
+     */
+    public static String apply(CharSequence source, List<Edit> edits) {
+        var result = new StringBuilder(source.length());
+        int position = 0;
+        for(var edit:edits) {
+            result.append(source, position, edit.start).append(edit.replacement);
+            position = edit.end;
+        }
+        return result.append(source, position, source.length()).toString();
+    }
+
+    /**
+     * Replaces the content of the file by renaming a temporary file in the same directory, so that a reader sees
+     * either the old content or the new one
+     */
+    public static void write(Path path, String content) throws IOException {
+        var directory = path.toAbsolutePath().getParent();
+        var temporary = Files.createTempFile(directory, "." + path.getFileName(), ".tmp");
+        try {
+            Files.writeString(temporary, content, StandardCharsets.UTF_8);
+            try {
+                Files.setPosixFilePermissions(temporary, Files.getPosixFilePermissions(path));
+            } catch (UnsupportedOperationException e) {
+                // not a POSIX file system
+            }
+            Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+}
@@ -1,11 +1,9 @@
 package com.github.sider.javasee;
 
 import com.github.sider.javasee.lib.ConsoleColors;
-import com.github.sider.javasee.lib.Libs;
 
-import java.io.File;
 import java.io.PrintStream;
-import java.nio.file.Files;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -57,6 +55,23 @@ public class Formatters {
          */
         public abstract void onScriptError(String path, Exception error);
 
+        /**
+         * Called when java files to check are enumerated
+         * @param count
+         * @param walkTime
+         */
+        public void onScriptsEnumerated(int count, Duration walkTime) {
+        }
+
+        /**
+         * Called when a rule is disabled for exceeding rule_budget
+         * Continue without the rule after the call
+         * @param rule
+         * @param reason
+         */
+        public void onRuleDisabled(Rule rule, String reason) {
+        }
+
         /**
          *
          * Called when issue is found
@@ -148,11 +163,15 @@ public class Formatters {
         }
 
         /**
-         * Note that line is 1-origin
+         * Called when a rule is disabled for exceeding rule_budget
+         * Continue without the rule after the call
+         *
+         * @param rule
+         * @param reason
          */
-        private String getLine(File path, int line) {
-            var lines = Libs.wrapException(() -> Files.readAllLines(path.toPath()));
-            return lines.get(line - 1);
+        @Override
+        public void onRuleDisabled(Rule rule, String reason) {
+            stderr.println("Rule disabled: " + rule.id + ": " + reason);
         }
 
         /**
@@ -168,7 +187,7 @@ public class Formatters {
             var position = pair.node.getRange().get().begin;
             var line = position.line;
             var column = position.column;
-            var src = ConsoleColors.red(getLine(path, line));
+            var src = ConsoleColors.red(javaFile.getLine(line));
             var message = rule.message.split("\n")[0];
             stdout.println(path + ":" + line + ":" + column + "\t" + src + "\t" + message + "(" + rule.id + ")");
         }
@@ -182,7 +201,10 @@ public class Formatters {
         public final List<Object> issues = new ArrayList<>();
         public final List<Object> scriptErrors = new ArrayList<>();
         public final List<Object> configErrors = new ArrayList<>();
+        public final List<Object> disabledRules = new ArrayList<>();
         public Object fatalError;
+        public int scriptCount;
+        public Duration walkTime = Duration.ZERO;
 
         /**
          * Called when analyzer started
@@ -255,6 +277,30 @@ public class Formatters {
             scriptErrors.add(List.of(path, error));
         }
 
+        /**
+         * Called when a rule is disabled for exceeding rule_budget
+         * Continue without the rule after the call
+         *
+         * @param rule
+         * @param reason
+         */
+        @Override
+        public void onRuleDisabled(Rule rule, String reason) {
+            disabledRules.add(Map.of("id", rule.id, "reason", reason));
+        }
+
+        /**
+         * Called when java files to check are enumerated
+         *
+         * @param count
+         * @param walkTime
+         */
+        @Override
+        public void onScriptsEnumerated(int count, Duration walkTime) {
+            this.scriptCount = count;
+            this.walkTime = walkTime;
+        }
+
         /**
          * Called when issue is found
          *
@@ -317,7 +363,7 @@ public class Formatters {
                     switch(ch) {
                         case '\b':
                             builder.append("\\");
-                            builder.append("f");
+                            builder.append("b");
                             break;
                         case '\t':
                             builder.append("\\");
@@ -331,14 +377,10 @@ public class Formatters {
                             builder.append("\\");
                             builder.append("\"");
                             break;
-                        case '\'':
-                            builder.append("\\");
-                            builder.append("\'");
-                            break;
                         case '\\':
                             builder.append("\\");
                             builder.append("\\");
-
+                            break;
                         case '\n':
                             builder.append("\\");
                             builder.append("n");
@@ -357,7 +399,11 @@ public class Formatters {
                             builder.append("u2029");
                             break;
                         default:
-                            builder.append(ch);
+                            if(ch < 0x20) {
+                                builder.append(String.format("\\u%04x", (int)ch));
+                            } else {
+                                builder.append(ch);
+                            }
                     }
                 }
                 builder.append("\"");
@@ -426,7 +472,12 @@ public class Formatters {
                                             "backtrace", Arrays.asList(error.getStackTrace()).stream().map((x) -> x.toString()).collect(Collectors.toList())
                                     )
                             );
-                        }).collect(Collectors.toList())
+                        }).collect(Collectors.toList()),
+                        "disabled_rules", disabledRules,
+                        "stats", Map.of(
+                                "scripts", scriptCount,
+                                "walk_time", walkTime.toNanos() / 1e9
+                        )
                 );
             }
         }
@@ -484,7 +535,12 @@ public class Formatters {
                                             "backtrace", Arrays.asList(error.getStackTrace()).stream().map((x) -> x.toString()).collect(Collectors.toList())
                                     )
                             );
-                        }).collect(Collectors.toList())
+                        }).collect(Collectors.toList()),
+                        "disabled_rules", disabledRules,
+                        "stats", Map.of(
+                                "scripts", scriptCount,
+                                "walk_time", walkTime.toNanos() / 1e9
+                        )
                 );
             }
 
@@ -2,12 +2,15 @@ package com.github.sider.javasee;
 
 import com.github.javaparser.JavaParser;
 import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.comments.CommentsCollection;
 import lombok.ToString;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.TreeSet;
 import java.util.function.Supplier;
 
 @ToString
@@ -15,22 +18,132 @@ public class JavaFile {
     private final Supplier<JavaParser> parserSupplier;
     public final File path;
 
+    /**
+     * Decoded content, which is read once and shared by the parser and the formatters
+     */
+    @ToString.Exclude
+    private volatile CharBuffer source;
+
+    /**
+     * Offsets of the beginnings of lines in source
+     */
+    @ToString.Exclude
+    private int[] lineStarts;
+
+    /**
+     * Whether the content is read from path, so that the file can be rewritten
+     */
+    public final boolean readFromPath;
+
     public JavaFile(File path, Supplier<JavaParser> parserSupplier) {
         this.path = path;
         this.parserSupplier = parserSupplier;
+        this.readFromPath = true;
+    }
+
+    /**
+     * Creates a JavaFile whose content is already loaded, such as an entry of an archive.
+     * `path` is used only to report locations.
+     */
+    public JavaFile(File path, Supplier<JavaParser> parserSupplier, CharBuffer source) {
+        this.path = path;
+        this.parserSupplier = parserSupplier;
+        this.readFromPath = false;
+        this.source = source;
+    }
+
+    public synchronized CharBuffer getSource() {
+        if(source == null) {
+            try {
+                source = SourceReader.read(path.toPath());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return source.duplicate();
+    }
+
+    /**
+     * Size of the content in bytes.  This doesn't wait for the thread reading or parsing the file, so that a file
+     * whose analysis timed out can be reported at once.
+     */
+    public long size() {
+        if(readFromPath) return path.length();
+        var source = this.source;
+        long size = 0;
+        for(int i = source.position(); i < source.limit(); i++) {
+            var ch = source.get(i);
+            if(ch < 0x80) {
+                size += 1;
+            } else if(ch < 0x800) {
+                size += 2;
+            } else if(Character.isHighSurrogate(ch) && i + 1 < source.limit() && Character.isLowSurrogate(source.get(i + 1))) {
+                size += 4;
+                i++;
+            } else {
+                size += 3;
+            }
+        }
+        return size;
     }
 
     public synchronized Node parseFile() {
         var parser = this.parserSupplier.get();
-        try {
-            var content = Files.readString(Paths.get(path.toURI()));
-            return parser.parse(content).getResult().get();
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        var source = getSource();
+        var event = new Events.Parse();
+        event.begin();
+        var result = parser.parse(SourceReader.reader(source));
+        var node = result.getResult().get();
+        Suppressions.build(node, result.getCommentsCollection().map(CommentsCollection::getComments).orElse(new TreeSet<>()), source);
+        event.end();
+        if(event.shouldCommit()) {
+            event.path = path.getPath();
+            event.characters = source.remaining();
+            event.nodeCount = node.findAll(Node.class).size();
+            event.commit();
         }
+        return node;
     }
 
     public NodePair rootPair() {
         return new NodePair(parseFile(), null);
     }
+
+    /**
+     * Returns the line without line terminator.  Note that line is 1-origin
+     */
+    public synchronized String getLine(int line) {
+        var source = getSource();
+        var lineStarts = lineStarts();
+        var start = lineStarts[line - 1];
+        var end = line < lineStarts.length ? lineStarts[line] : source.length();
+        while(end > start && (source.charAt(end - 1) == '\n' || source.charAt(end - 1) == '\r')) end--;
+        return source.subSequence(start, end).toString();
+    }
+
+    /**
+     * Returns the offset in the source of the 1-origin line and column
+     */
+    public synchronized int offsetOf(int line, int column) {
+        return lineStarts()[line - 1] + column - 1;
+    }
+
+    private int[] lineStarts() {
+        if(lineStarts == null) {
+            var source = getSource();
+            var starts = new int[16];
+            var count = 0;
+            starts[count++] = 0;
+            for(int i = 0; i < source.length(); i++) {
+                var ch = source.charAt(i);
+                if(ch == '\r' && i + 1 < source.length() && source.charAt(i + 1) == '\n') i++;
+                if(ch == '\r' || ch == '\n') {
+                    if(count == starts.length) starts = Arrays.copyOf(starts, count * 2);
+                    starts[count++] = i + 1;
+                }
+            }
+            lineStarts = Arrays.copyOf(starts, count);
+        }
+        return lineStarts;
+    }
 }
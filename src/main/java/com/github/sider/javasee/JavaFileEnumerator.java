@@ -1,50 +1,253 @@
 package com.github.sider.javasee;
 
 import com.github.javaparser.JavaParser;
-import lombok.AllArgsConstructor;
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 
+import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
-@AllArgsConstructor
+/**
+ * Enumerates Java files under paths.  An enumerator can enumerate more paths by {@link #enumerate(List, BiConsumer)},
+ * where the files and directories enumerated by an earlier call are skipped, and the threads walking directories are
+ * shared until it is closed.
+ */
 @Getter
-public class JavaFileEnumerator {
+public class JavaFileEnumerator implements AutoCloseable {
     public final List<File> paths;
     public final Config config;
 
+    /**
+     * Total elapsed time of the directory walks
+     */
+    private Duration walkTime = Duration.ZERO;
+
+    /**
+     * Keys of the files, archives, and directories enumerated so far
+     */
+    @Getter(AccessLevel.NONE)
+    private final Set<Object> visited = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Created by the first directory walk
+     */
+    @Getter(AccessLevel.NONE)
+    private ForkJoinPool pool;
+
+    /**
+     * Called with the number of files found by each directory walk and archive entry, before they are loaded
+     */
+    @Setter
+    private BiConsumer<Integer, Duration> enumerationListener = (count, time) -> {};
+
+    /**
+     * Files and archive entries not accepted are neither counted nor loaded
+     */
+    @Setter
+    private Predicate<File> filter = path -> true;
+
+    public JavaFileEnumerator(List<File> paths, Config config) {
+        this.paths = paths;
+        this.config = config;
+    }
+
     private void loadScript(File path, BiConsumer<File, JavaFile> block) {
         var script = new JavaFile(path, () -> new JavaParser());
         block.accept(path, script);
     }
 
-    private void enumerateFilesInDirectory(File path, Set<File> visit, BiConsumer<File, JavaFile> block) {
-        if (visit.contains(path)) {
-            return;
+    public static boolean isArchive(Path path) {
+        var name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".jar") || name.endsWith(".zip");
+    }
+
+    /**
+     * Reads `.java` entries of a jar or zip archive in one sequential pass, without extracting them to disk.
+     * Each entry is reported as `archive!/entry/path`.
+     */
+    private void loadArchive(Path archive, BiConsumer<File, JavaFile> block) {
+        try(var zip = new ZipInputStream(new BufferedInputStream(Files.newInputStream(archive)))) {
+            ZipEntry entry;
+            while((entry = zip.getNextEntry()) != null) {
+                if(entry.isDirectory() || !entry.getName().endsWith(".java")) continue;
+                var path = new File(archive + "!/" + entry.getName());
+                if(!filter.test(path)) continue;
+                var source = SourceReader.decode(ByteBuffer.wrap(zip.readAllBytes()));
+                enumerationListener.accept(1, Duration.ZERO);
+                block.accept(path, new JavaFile(path, () -> new JavaParser(), source));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archive: " + archive, e);
+        }
+    }
+
+    /**
+     * Identifies a file or directory regardless of the path reaching it: (device, inode) on POSIX file systems,
+     * or the real path where file keys are not available.
+     */
+    private static Object fileKey(Path path, BasicFileAttributes attributes) throws IOException {
+        var key = attributes.fileKey();
+        return key != null ? key : path.toRealPath();
+    }
+
+    /**
+     * Walks a directory, forking a subtask for each subdirectory.
+     * Directories and files already in `visited` are skipped, which breaks symlink cycles and
+     * avoids scanning the same tree twice when the roots overlap.
+     * Excluded directories are pruned without being listed.
+     */
+    private static class DirectoryWalk extends RecursiveAction {
+        private final Path directory;
+        private final Path absoluteDirectory;
+        private final ExcludeMatcher matcher;
+        private final Set<Object> visited;
+        private final ConcurrentLinkedQueue<Path> found;
+
+        DirectoryWalk(Path directory, Path absoluteDirectory, ExcludeMatcher matcher, Set<Object> visited, ConcurrentLinkedQueue<Path> found) {
+            this.directory = directory;
+            this.absoluteDirectory = absoluteDirectory;
+            this.matcher = matcher;
+            this.visited = visited;
+            this.found = found;
         }
-        visit.add(path);
 
-        if(path.isDirectory()) {
-            if(path.getName().equals("build")) return;
-            for(File child:path.listFiles()) {
-                enumerateFilesInDirectory(child, visit, block);
+        @Override
+        protected void compute() {
+            var children = new ArrayList<Path>();
+            var names = new HashSet<String>();
+            try(var stream = Files.newDirectoryStream(directory)) {
+                for(Path child:stream) {
+                    children.add(child);
+                    names.add(child.getFileName().toString());
+                }
+            } catch (IOException e) {
+                // unreadable directory
+                return;
+            }
+
+            var matcher = this.matcher.enter(absoluteDirectory, names);
+            var subtasks = new ArrayList<DirectoryWalk>();
+            for(Path child:children) {
+                var name = child.getFileName().toString();
+                var absoluteChild = absoluteDirectory.resolve(name);
+                BasicFileAttributes attributes;
+                try {
+                    // follows symbolic links
+                    attributes = Files.readAttributes(child, BasicFileAttributes.class);
+                    if(attributes.isDirectory()) {
+                        if(matcher.isExcluded(absoluteChild, true)) continue;
+                        if(visited.add(fileKey(child, attributes))) {
+                            subtasks.add(new DirectoryWalk(child, absoluteChild, matcher, visited, found));
+                        }
+                    } else if(attributes.isRegularFile() && name.endsWith(".java")) {
+                        if(matcher.isExcluded(absoluteChild, false)) continue;
+                        if(visited.add(fileKey(child, attributes))) {
+                            found.add(child);
+                        }
+                    }
+                } catch (IOException e) {
+                    // dangling symbolic link, or removed during the walk
+                }
             }
-        } else if(path.getName().endsWith(".java")) {
-            loadScript(path, block);
+            invokeAll(subtasks);
         }
     }
 
+    /**
+     * Enumerates the files under the paths given to the constructor, and closes the enumerator
+     */
     public void forEach(BiConsumer<File, JavaFile> block) {
+        try {
+            enumerate(paths, block);
+        } finally {
+            close();
+        }
+    }
+
+    public void enumerate(List<File> paths, BiConsumer<File, JavaFile> block) {
+        var event = new Events.FileEnumeration();
+        event.begin();
+        var start = System.nanoTime();
+        var found = new ConcurrentLinkedQueue<Path>();
+        var walks = new ArrayList<DirectoryWalk>();
+        var archives = new ArrayList<Path>();
         for(File path:paths) {
-            if(path.isDirectory()) {
-                enumerateFilesInDirectory(path, new HashSet<>(), block);
+            var root = path.toPath();
+            try {
+                var attributes = Files.readAttributes(root, BasicFileAttributes.class);
+                if(attributes.isRegularFile() && isArchive(root)) {
+                    if(visited.add(fileKey(root, attributes))) archives.add(root);
+                } else if(attributes.isRegularFile()) {
+                    // a file given explicitly is checked regardless of the exclude patterns, but only if it is a
+                    // source, since @argfiles and -files-from often list every file of a project
+                    if(root.getFileName().toString().endsWith(".java") && visited.add(fileKey(root, attributes))) found.add(root);
+                } else if(attributes.isDirectory() && visited.add(fileKey(root, attributes))) {
+                    var absoluteRoot = root.toAbsolutePath().normalize();
+                    var matcher = config != null ?
+                            ExcludeMatcher.forRoot(absoluteRoot, config.rootDirectory, config.excludes) :
+                            ExcludeMatcher.forRoot(absoluteRoot, null, List.of());
+                    walks.add(new DirectoryWalk(root, absoluteRoot, matcher, visited, found));
+                }
+            } catch (IOException e) {
+                // nonexistent path
             }
         }
+
+        if(!walks.isEmpty()) {
+            // Walking directories is bound by I/O latency rather than CPU, so use more threads than processors
+            if(pool == null) pool = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors() * 2));
+            pool.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(walks);
+                }
+            });
+        }
+
+        var files = new ArrayList<Path>();
+        for(Path file:found) {
+            if(filter.test(file.toFile())) files.add(file);
+        }
+        files.sort(Comparator.comparing(Path::toString));
+        var time = Duration.ofNanos(System.nanoTime() - start);
+        walkTime = walkTime.plus(time);
+        event.roots = paths.toString();
+        event.fileCount = files.size();
+        event.commit();
+        enumerationListener.accept(files.size(), time);
+
+        for(Path file:files) {
+            loadScript(file.toFile(), block);
+        }
+        for(Path archive:archives) {
+            loadArchive(archive, block);
+        }
+    }
+
+    @Override
+    public void close() {
+        if(pool != null) pool.shutdown();
     }
 }
@@ -26,6 +26,7 @@ public class Main {
         HelpCommand help = new HelpCommand(commands, commandName);
         commands.add(new InitCommand());
         commands.add(new CheckCommand());
+        commands.add(new MergeCommand());
         commands.add(new FindCommand());
         commands.add(new TestCommand());
         commands.add(new VersionCommand());
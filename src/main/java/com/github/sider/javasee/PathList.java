@@ -0,0 +1,41 @@
+package com.github.sider.javasee;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * Reads a list of paths separated by newlines (LF or CRLF) or NUL characters, as written by
+ * `find -print0`, `git ls-files -z` or build tools.
+ * Each path is passed to the consumer as soon as its separator is read, so that a long list from a pipe is
+ * processed while it is still being written.
+ */
+public class PathList {
+    public static void read(Reader reader, Consumer<String> consumer) {
+        var path = new StringBuilder();
+        var buffer = new char[8192];
+        try {
+            int length;
+            while((length = reader.read(buffer)) >= 0) {
+                for(int i = 0; i < length; i++) {
+                    char ch = buffer[i];
+                    if(ch == '\n' || ch == '\0') {
+                        emit(path, consumer);
+                    } else {
+                        path.append(ch);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        emit(path, consumer);
+    }
+
+    private static void emit(StringBuilder path, Consumer<String> consumer) {
+        if(path.length() > 0 && path.charAt(path.length() - 1) == '\r') path.setLength(path.length() - 1);
+        if(path.length() > 0) consumer.accept(path.toString());
+        path.setLength(0);
+    }
+}
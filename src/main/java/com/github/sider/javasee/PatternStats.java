@@ -0,0 +1,277 @@
+package com.github.sider.javasee;
+
+import com.github.sider.javasee.ast.ConjunctOrder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
+
+/**
+ * Statistics of the patterns of each rule (tests, hits and sampled match time), which decide the order to evaluate
+ * the patterns.  A rule matches when any of its patterns matches, so the patterns likely to hit cheaply are
+ * evaluated first.  Likewise, the two checks of a composite pattern which must both pass (see {@link ConjunctOrder}) are
+ * evaluated starting from the one rejecting more per cost.  The orders are updated whenever the statistics of a file
+ * are merged, and are fixed during a file.  The patterns themselves are never changed.
+ *
+ * Statistics can be saved and loaded to start the next run with the learned order.  A line of the file is
+ * {@code <rule id> TAB <pattern index> TAB <hash of pattern> TAB <tests> TAB <hits> TAB <timed tests> TAB <nanos>}
+ * for a pattern, and
+ * {@code <rule id> TAB c<composite index> TAB <hash of patterns> TAB <tests> TAB <rejects> TAB <tests> TAB <rejects>}
+ * for the first and second checks of a composite pattern.
+ */
+public class PatternStats {
+    /**
+     * Match time is measured for one node of this number, since measuring is more expensive than most patterns
+     */
+    static final int SAMPLE_INTERVAL = 16;
+
+    private final List<Rule> rules;
+    private final long[][] tests;
+    private final long[][] hits;
+    private final long[][] timed;
+    private final long[][] nanos;
+    private volatile int[][] orders;
+    private final long[][] conjunctTests;
+    private final long[][] conjunctRejects;
+    private final int[][] conjunctSizes;
+    private volatile boolean[][] swapped;
+
+    public PatternStats(List<Rule> rules) {
+        this.rules = rules;
+        this.tests = new long[rules.size()][];
+        this.hits = new long[rules.size()][];
+        this.timed = new long[rules.size()][];
+        this.nanos = new long[rules.size()][];
+        for(int i = 0; i < rules.size(); i++) {
+            var size = rules.get(i).patterns.size();
+            tests[i] = new long[size];
+            hits[i] = new long[size];
+            timed[i] = new long[size];
+            nanos[i] = new long[size];
+        }
+        this.conjunctTests = new long[rules.size()][];
+        this.conjunctRejects = new long[rules.size()][];
+        this.conjunctSizes = new int[rules.size()][];
+        for(int i = 0; i < rules.size(); i++) {
+            var rule = rules.get(i);
+            conjunctTests[i] = new long[rule.conjuncts * 2];
+            conjunctRejects[i] = new long[rule.conjuncts * 2];
+            conjunctSizes[i] = ConjunctOrder.sizes(rule.patterns, rule.conjuncts);
+        }
+        this.orders = computeOrders();
+        this.swapped = computeSwapped();
+    }
+
+    /**
+     * Statistics of a file, merged after the file is matched
+     */
+    public class Sample {
+        final int[][] orders = PatternStats.this.orders;
+        final long[][] tests = newCounters();
+        final long[][] hits = newCounters();
+        final long[][] timed = newCounters();
+        final long[][] nanos = newCounters();
+        final ConjunctOrder.Counters conjuncts = new ConjunctOrder.Counters(swapped);
+        private int nodes = ThreadLocalRandom.current().nextInt(SAMPLE_INTERVAL);
+
+        /**
+         * Called for each node, to decide whether match time is measured
+         */
+        boolean nextNode() {
+            return ++nodes % SAMPLE_INTERVAL == 0;
+        }
+
+        /**
+         * Binds the counters of the composite patterns to the current thread while the file is matched
+         */
+        ConjunctOrder.Scope useConjuncts() {
+            return ConjunctOrder.use(conjuncts);
+        }
+
+        /**
+         * @return whether any pattern of the rule matches, evaluating them in the learned order
+         */
+        boolean matches(int ruleIndex, NodePair pair, boolean sampled) {
+            conjuncts.setRule(ruleIndex);
+            try {
+                return matchesInOrder(ruleIndex, pair, sampled);
+            } finally {
+                conjuncts.setRule(-1);
+            }
+        }
+
+        private boolean matchesInOrder(int ruleIndex, NodePair pair, boolean sampled) {
+            var patterns = rules.get(ruleIndex).patterns;
+            if(patterns.size() == 1) return patterns.get(0).matches(pair);
+            for(int j:orders[ruleIndex]) {
+                var start = sampled ? System.nanoTime() : 0;
+                var matched = patterns.get(j).matches(pair);
+                if(sampled) {
+                    timed[ruleIndex][j]++;
+                    nanos[ruleIndex][j] += System.nanoTime() - start;
+                }
+                tests[ruleIndex][j]++;
+                if(matched) {
+                    hits[ruleIndex][j]++;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        public void merge() {
+            PatternStats.this.merge(tests, hits, timed, nanos, conjuncts);
+        }
+    }
+
+    public Sample newSample() {
+        return new Sample();
+    }
+
+    private long[][] newCounters() {
+        var counters = new long[rules.size()][];
+        for(int i = 0; i < counters.length; i++) {
+            counters[i] = new long[rules.get(i).patterns.size()];
+        }
+        return counters;
+    }
+
+    private synchronized void merge(long[][] tests, long[][] hits, long[][] timed, long[][] nanos, ConjunctOrder.Counters conjuncts) {
+        for(int i = 0; i < tests.length; i++) {
+            for(int j = 0; j < tests[i].length; j++) {
+                this.tests[i][j] += tests[i][j];
+                this.hits[i][j] += hits[i][j];
+                this.timed[i][j] += timed[i][j];
+                this.nanos[i][j] += nanos[i][j];
+            }
+            for(int k = 0; k < conjunctTests[i].length; k++) {
+                conjunctTests[i][k] += conjuncts.tests[i][k];
+                conjunctRejects[i][k] += conjuncts.rejects[i][k];
+            }
+        }
+        orders = computeOrders();
+        swapped = computeSwapped();
+    }
+
+    /**
+     * Order of the patterns of each rule, by ascending expected cost per hit
+     */
+    private int[][] computeOrders() {
+        var orders = new int[rules.size()][];
+        for(int i = 0; i < orders.length; i++) {
+            var tests = this.tests[i];
+            var hits = this.hits[i];
+            var timed = this.timed[i];
+            var nanos = this.nanos[i];
+            // one test with half a hit as the prior, so that unobserved patterns keep their order
+            orders[i] = IntStream.range(0, tests.length).boxed()
+                    .sorted(Comparator.comparingDouble(j -> (nanos[j] + 1.0) / (timed[j] + 1) / ((hits[j] + 0.5) / (tests[j] + 1))))
+                    .mapToInt(j -> j)
+                    .toArray();
+        }
+        return orders;
+    }
+
+    /**
+     * Whether the second check of each composite pattern of each rule is evaluated first
+     */
+    private boolean[][] computeSwapped() {
+        var swapped = new boolean[rules.size()][];
+        for(int i = 0; i < swapped.length; i++) {
+            var tests = conjunctTests[i];
+            var rejects = conjunctRejects[i];
+            var sizes = conjunctSizes[i];
+            swapped[i] = new boolean[tests.length / 2];
+            for(int k = 0; k < swapped[i].length; k++) {
+                swapped[i][k] = ConjunctOrder.swaps(tests[2 * k], rejects[2 * k], sizes[2 * k], tests[2 * k + 1], rejects[2 * k + 1], sizes[2 * k + 1]);
+            }
+        }
+        return swapped;
+    }
+
+    /**
+     * @return order of the pattern indices of the rule
+     */
+    public int[] order(int ruleIndex) {
+        return orders[ruleIndex].clone();
+    }
+
+    /**
+     * @return whether the second check of the composite pattern of the rule is evaluated first
+     */
+    public boolean isSwapped(int ruleIndex, int conjunct) {
+        return swapped[ruleIndex][conjunct];
+    }
+
+    /**
+     * Loads statistics saved by another run.  Statistics of removed rules and changed patterns are ignored.
+     */
+    public synchronized void load(Path path) throws IOException {
+        var indices = new HashMap<String, Integer>();
+        for(int i = 0; i < rules.size(); i++) {
+            indices.putIfAbsent(rules.get(i).id, i);
+        }
+        for(var line:Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            var fields = line.split("\t");
+            if(fields.length != 7) continue;
+            var i = indices.get(fields[0]);
+            if(i == null) continue;
+            try {
+                if(fields[1].startsWith("c")) {
+                    var k = Integer.parseInt(fields[1].substring(1));
+                    if(k < 0 || k * 2 >= conjunctTests[i].length || Integer.parseInt(fields[2]) != hash(i)) continue;
+                    conjunctTests[i][2 * k] = Long.parseLong(fields[3]);
+                    conjunctRejects[i][2 * k] = Long.parseLong(fields[4]);
+                    conjunctTests[i][2 * k + 1] = Long.parseLong(fields[5]);
+                    conjunctRejects[i][2 * k + 1] = Long.parseLong(fields[6]);
+                    continue;
+                }
+                var j = Integer.parseInt(fields[1]);
+                if(j < 0 || j >= tests[i].length || Integer.parseInt(fields[2]) != hash(i, j)) continue;
+                tests[i][j] = Long.parseLong(fields[3]);
+                hits[i][j] = Long.parseLong(fields[4]);
+                timed[i][j] = Long.parseLong(fields[5]);
+                nanos[i][j] = Long.parseLong(fields[6]);
+            } catch (NumberFormatException e) {
+                // broken line
+            }
+        }
+        orders = computeOrders();
+        swapped = computeSwapped();
+    }
+
+    public synchronized void save(Path path) throws IOException {
+        var lines = new ArrayList<String>();
+        for(int i = 0; i < rules.size(); i++) {
+            for(int j = 0; j < tests[i].length; j++) {
+                lines.add(String.join("\t", rules.get(i).id, String.valueOf(j), String.valueOf(hash(i, j)),
+                        String.valueOf(tests[i][j]), String.valueOf(hits[i][j]), String.valueOf(timed[i][j]), String.valueOf(nanos[i][j])));
+            }
+            for(int k = 0; k * 2 < conjunctTests[i].length; k++) {
+                lines.add(String.join("\t", rules.get(i).id, "c" + k, String.valueOf(hash(i)),
+                        String.valueOf(conjunctTests[i][2 * k]), String.valueOf(conjunctRejects[i][2 * k]),
+                        String.valueOf(conjunctTests[i][2 * k + 1]), String.valueOf(conjunctRejects[i][2 * k + 1])));
+            }
+        }
+        Files.write(path, lines, StandardCharsets.UTF_8);
+    }
+
+    private int hash(int ruleIndex, int patternIndex) {
+        var sources = rules.get(ruleIndex).sources;
+        return patternIndex < sources.size() ? String.valueOf(sources.get(patternIndex)).hashCode() : 0;
+    }
+
+    /**
+     * Hash of all the patterns of the rule, since composite patterns are numbered across them
+     */
+    private int hash(int ruleIndex) {
+        return String.valueOf(rules.get(ruleIndex).sources).hashCode();
+    }
+}
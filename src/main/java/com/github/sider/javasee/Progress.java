@@ -0,0 +1,130 @@
+package com.github.sider.javasee;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reports progress of `check -progress` to stderr.
+ *
+ * The analysis only increments the counters, and a timer thread reads them to print the status.
+ * On a terminal the status line is redrawn every INTERACTIVE_INTERVAL; otherwise a log line is printed every
+ * LOG_INTERVAL so that CI logs are not flooded.
+ */
+public class Progress implements AutoCloseable {
+    public static final Duration INTERACTIVE_INTERVAL = Duration.ofMillis(250);
+    public static final Duration LOG_INTERVAL = Duration.ofSeconds(10);
+
+    private final PrintStream stderr;
+    private final boolean interactive;
+    private final long startTime = System.nanoTime();
+    private final Timer timer = new Timer("javasee-progress", true);
+
+    private final LongAdder enumerated = new LongAdder();
+    private final LongAdder parsed = new LongAdder();
+    private final LongAdder matched = new LongAdder();
+    private final LongAdder lines = new LongAdder();
+    private final LongAdder issues = new LongAdder();
+    private final LongAdder enumerationNanos = new LongAdder();
+    private final LongAdder parseNanos = new LongAdder();
+    private final LongAdder matchNanos = new LongAdder();
+
+    public Progress(PrintStream stderr, boolean interactive, Duration interval) {
+        this.stderr = stderr;
+        this.interactive = interactive;
+        timer.scheduleAtFixedRate(new TimerTask() {
+            @Override
+            public void run() {
+                report();
+            }
+        }, interval.toMillis(), interval.toMillis());
+    }
+
+    /**
+     * Creates a Progress which redraws the status line if stderr is the standard error of the process and a terminal
+     */
+    public static Progress start(PrintStream stderr) {
+        var interactive = stderr == System.err && isStandardErrorTerminal();
+        return new Progress(stderr, interactive, interactive ? INTERACTIVE_INTERVAL : LOG_INTERVAL);
+    }
+
+    /**
+     * Java can't tell whether a file descriptor is a terminal, so the standard error is resolved by /proc on Linux.
+     * Elsewhere, it is assumed to be a terminal if the standard input and output are, as System.console() tells.
+     */
+    static boolean isStandardErrorTerminal() {
+        var descriptor = Paths.get("/proc/self/fd/2");
+        if(!Files.isSymbolicLink(descriptor)) return System.console() != null;
+        try {
+            var target = Files.readSymbolicLink(descriptor).toString();
+            return target.startsWith("/dev/pts/") || target.startsWith("/dev/tty");
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public void onEnumerated(int count, Duration time) {
+        enumerated.add(count);
+        enumerationNanos.add(time.toNanos());
+    }
+
+    public void onParsed(long lineCount, long nanos) {
+        parsed.increment();
+        lines.add(lineCount);
+        parseNanos.add(nanos);
+    }
+
+    public void onMatched(long nanos) {
+        matched.increment();
+        matchNanos.add(nanos);
+    }
+
+    public void onIssueFound() {
+        issues.increment();
+    }
+
+    private synchronized void report() {
+        var seconds = (System.nanoTime() - startTime) / 1e9;
+        var enumerated = this.enumerated.sum();
+        var matched = this.matched.sum();
+        var filesPerSecond = matched / Math.max(seconds, 1e-9);
+        var heap = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+        var status = String.format(
+                "%d/%d files (%d parsed), %.1f files/s, %.0f lines/s, %d issues, heap %d MB, ETA %s",
+                matched, enumerated, parsed.sum(), filesPerSecond, lines.sum() / Math.max(seconds, 1e-9), issues.sum(),
+                heap / (1024 * 1024), filesPerSecond > 0 && enumerated >= matched ? formatTime((enumerated - matched) / filesPerSecond) : "-"
+        );
+        if(interactive) {
+            // return to the beginning of the line and clear it
+            stderr.print("\r\u001B[K" + status);
+        } else {
+            stderr.println("[javasee] " + status);
+        }
+        stderr.flush();
+    }
+
+    private static String formatTime(double seconds) {
+        var total = (long)Math.ceil(seconds);
+        return String.format("%d:%02d", total / 60, total % 60);
+    }
+
+    /**
+     * Stops the timer and prints the summary
+     */
+    @Override
+    public synchronized void close() {
+        timer.cancel();
+        if(interactive) stderr.print("\r\u001B[K");
+        stderr.println(String.format(
+                "[javasee] Checked %d files (%d lines) in %.2fs, %d issues: enumeration %.2fs, parse %.2fs, match %.2fs",
+                matched.sum(), lines.sum(), (System.nanoTime() - startTime) / 1e9, issues.sum(),
+                enumerationNanos.sum() / 1e9, parseNanos.sum() / 1e9, matchNanos.sum() / 1e9
+        ));
+        stderr.flush();
+    }
+}
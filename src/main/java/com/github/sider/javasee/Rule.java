@@ -1,6 +1,9 @@
 package com.github.sider.javasee;
 
 import com.github.sider.javasee.ast.AST;
+import com.github.sider.javasee.ast.ConjunctOrder;
+import com.github.sider.javasee.ast.Constraint;
+import com.github.sider.javasee.ast.PatternTable;
 import com.github.sider.javasee.parser.JavaSeeParser;
 import com.github.sider.javasee.parser.ParseException;
 
@@ -11,17 +14,34 @@ import java.util.stream.Collectors;
 public class Rule {
     public final String id;
     public final String message;
-    public final List<AST.Expression> patterns;
+    public final List<AST.PatternNode> patterns;
     public final List<?> sources;
     public final List<String> matchExamples;
     public final List<String> unmatchExamples;
     public final List<String> justifications;
 
-    private static final Set<String> KNOWN_KEYS = Set.of("id", "pattern", "message", "justification", "tests");
+    /**
+     * Template of the code replacing the matched node, where {@code $name} is replaced with the source of the node
+     * bound to the metavariable, or null if the rule has no fix
+     */
+    public final String fix;
+
+    /**
+     * Number of the composite patterns whose checks {@link PatternStats} may reorder
+     */
+    final int conjuncts;
+
+    private static final Set<String> KNOWN_KEYS = Set.of("id", "pattern", "message", "justification", "tests", "fix");
 
     public Rule(
-            String id, String message, List<AST.Expression> patterns, List<?> sources,
+            String id, String message, List<AST.PatternNode> patterns, List<?> sources,
             List<String> matchExamples, List<String> unmatchExamples, List<String> justifications) {
+        this(id, message, patterns, sources, matchExamples, unmatchExamples, justifications, null);
+    }
+
+    public Rule(
+            String id, String message, List<AST.PatternNode> patterns, List<?> sources,
+            List<String> matchExamples, List<String> unmatchExamples, List<String> justifications, String fix) {
         this.id = id;
         this.message = message;
         this.patterns = patterns;
@@ -29,6 +49,8 @@ public class Rule {
         this.matchExamples = matchExamples;
         this.unmatchExamples = unmatchExamples;
         this.justifications = justifications;
+        this.fix = fix;
+        this.conjuncts = ConjunctOrder.number(patterns);
     }
 
     public static Rule load(Map<String, Object> map) throws Exceptions.MissingKeyException, Exceptions.UnknownKeysException, Exceptions.PatternSyntaxException {
@@ -45,14 +67,14 @@ public class Rule {
             throw new Exceptions.MissingKeyException("id is missing");
         }
 
-        // Validate value of `pattern` is String or String[] or null
+        // Validate value of `pattern` is String or String[] or null, where an element may be a map of `subject` and `where`
         validate: {
             Object value = map.get("pattern");
             if(value == null) break validate;
             if(value instanceof String) break validate;
             if(value instanceof List<?>) {
                 List<?> values = (List<?>)value;
-                if(values.stream().allMatch(v -> (v instanceof String))) break validate;
+                if(values.stream().allMatch(v -> (v instanceof String) || (v instanceof Map<?, ?>))) break validate;
             }
             throw new Exceptions.InvalidTypeException("pattern should be String or List<String>.  However, it's " + value);
         }
@@ -66,19 +88,26 @@ public class Rule {
         int index = 0;
         var patterns = srcs.stream().map((src) -> {
             Optional<String> subject = Optional.empty();
-            Optional<Map<String, String>> where = Optional.empty();
+            Optional<Map<String, Object>> where = Optional.empty();
+            Map<?, ?> context = Map.of();
             if(src instanceof String) {
                 subject = Optional.ofNullable((String)src);
                 where = Optional.of(new HashMap<>());
             } else if(src instanceof Map<?, ?>) {
                 subject = Optional.ofNullable((String)((Map<?, ?>)src).get("subject"));
-                where = Optional.ofNullable((Map<String, String>)((Map<?, ?>) src).get("where"));
+                var value = ((Map<?, ?>)src).get("where");
+                if(value != null && !(value instanceof Map<?, ?>)) {
+                    throw new Exceptions.InvalidTypeException("where should be a Map.  However, it's " + value);
+                }
+                where = Optional.ofNullable((Map<String, Object>)value);
+                context = (Map<?, ?>)src;
             } else {
                 assert false;
             }
             try {
                 if(subject.isPresent()) {
-                    return new JavaSeeParser(new StringReader(subject.get())).WholeExpression();
+                    var pattern = new JavaSeeParser(new StringReader(subject.get())).WholePattern();
+                    return contextualize(constrain(pattern, where.orElse(Map.of())), context);
                 } else {
                     // Confirm that value of `subject` is present
                     throw new Exceptions.MissingKeyException("subject");
@@ -104,6 +133,11 @@ public class Rule {
 
         List<String> justifications = (List<String>)valuesOf(map, "justification");
 
+        var fix = map.get("fix");
+        if(fix != null && !(fix instanceof String)) {
+            throw new Exceptions.InvalidTypeException("fix should be String.  However, it's " + fix);
+        }
+
         return new Rule(
                 id.get(),
                 message,
@@ -111,10 +145,51 @@ public class Rule {
                 srcs,
                 matchExamples,
                 unmatchExamples,
-                justifications
+                justifications,
+                (String)fix
         );
     }
 
+    /**
+     * Compiles metavariables and `where` constraints of them in the pattern
+     */
+    private static AST.PatternNode constrain(AST.PatternNode pattern, Map<String, Object> where) {
+        var metavariables = PatternTable.metavariables(pattern);
+        var constraints = new ArrayList<Constraint>();
+        for(var entry:where.entrySet()) {
+            var variable = entry.getKey().startsWith("$") ? entry.getKey().substring(1) : entry.getKey();
+            if(!metavariables.contains(variable)) {
+                throw new Exceptions.InvalidTypeException("where has unknown metavariable: " + entry.getKey() + ", only " + metavariables + " are in the pattern");
+            }
+            constraints.addAll(Constraint.compile(variable, entry.getValue()));
+        }
+        return AST.Constrained.of(pattern, constraints);
+    }
+
+    /**
+     * Compiles `inside`, `not-inside` and `has` of the pattern
+     */
+    private static AST.PatternNode contextualize(AST.PatternNode pattern, Map<?, ?> context) throws ParseException {
+        var inside = predicates(context.get("inside"));
+        var notInside = predicates(context.get("not-inside"));
+        var has = predicates(context.get("has"));
+        if(inside.isEmpty() && notInside.isEmpty() && has.isEmpty()) return pattern;
+        return new AST.Contextual(pattern.getLocation(), pattern, inside, notInside, has);
+    }
+
+    private static List<AST.PatternNode> predicates(Object value) throws ParseException {
+        if(value == null) return List.of();
+        var sources = value instanceof List<?> ? (List<?>)value : List.of(value);
+        var result = new ArrayList<AST.PatternNode>();
+        for(var source:sources) {
+            if(!(source instanceof String)) {
+                throw new Exceptions.InvalidTypeException("context should be String or List<String>.  However, it's " + value);
+            }
+            result.add(AST.Constrained.of(new JavaSeeParser(new StringReader((String)source)).WholePattern(), List.of()));
+        }
+        return result;
+    }
+
     private static List<?> valuesOf(Map<String, Object> map, String key) {
         Optional<Object> valueOpt;
         valueOpt = Optional.ofNullable(map.get(key));
@@ -0,0 +1,122 @@
+package com.github.sider.javasee;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiConsumer;
+
+/**
+ * Limits of the time each rule may spend for matching (`rule_budget` of config).
+ * A rule exceeding the limits is disabled for the rest of the run by {@link Cost}, so that a pathologically slow
+ * rule cannot make the whole run slow.
+ */
+public class RuleBudget {
+    private static final Set<String> KNOWN_KEYS = Set.of("max_share", "max_nanos_per_node");
+
+    /**
+     * A rule is judged after matched against this number of nodes, so that JIT compilation does not count
+     */
+    public static final long MIN_NODES = 10_000;
+
+    /**
+     * Maximum share of a rule in the total match time, or 0 for no limit
+     */
+    public final double maxShare;
+
+    /**
+     * Maximum average nanoseconds a rule may spend for a node, or 0 for no limit
+     */
+    public final long maxNanosPerNode;
+
+    public RuleBudget(double maxShare, long maxNanosPerNode) {
+        this.maxShare = maxShare;
+        this.maxNanosPerNode = maxNanosPerNode;
+    }
+
+    public static RuleBudget load(Object yaml) {
+        if(!(yaml instanceof Map<?, ?>)) {
+            throw new Exceptions.InvalidTypeException("rule_budget should be a Map.  However, it's " + yaml);
+        }
+        var map = (Map<String, Object>)yaml;
+        if(!KNOWN_KEYS.containsAll(map.keySet())) {
+            throw new Exceptions.UnknownKeysException(map.keySet(), KNOWN_KEYS);
+        }
+        var maxShare = number(map, "max_share").doubleValue();
+        if(maxShare < 0 || maxShare > 1) {
+            throw new Exceptions.InvalidTypeException("max_share should be between 0 and 1.  However, it's " + maxShare);
+        }
+        return new RuleBudget(maxShare, number(map, "max_nanos_per_node").longValue());
+    }
+
+    private static Number number(Map<String, Object> map, String key) {
+        var value = map.getOrDefault(key, 0);
+        if(!(value instanceof Number)) {
+            throw new Exceptions.InvalidTypeException(key + " should be a number.  However, it's " + value);
+        }
+        return (Number)value;
+    }
+
+    /**
+     * Cost accounting of the rules in a run
+     */
+    public static class Cost {
+        private static final int CHECK_INTERVAL = 1024;
+
+        public final RuleBudget budget;
+        private final List<Rule> rules;
+        private final AtomicLongArray nanos;
+        private final AtomicLongArray nodes;
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicReferenceArray<String> disabledReasons;
+        private volatile BiConsumer<Rule, String> listener = (rule, reason) -> {};
+
+        public Cost(RuleBudget budget, List<Rule> rules) {
+            this.budget = budget;
+            this.rules = rules;
+            this.nanos = new AtomicLongArray(rules.size());
+            this.nodes = new AtomicLongArray(rules.size());
+            this.disabledReasons = new AtomicReferenceArray<>(rules.size());
+        }
+
+        /**
+         * Called with the rule and the reason when a rule is disabled
+         */
+        public void setListener(BiConsumer<Rule, String> listener) {
+            this.listener = listener;
+        }
+
+        /**
+         * @param index index of the rule in the rules
+         */
+        public boolean isDisabled(int index) {
+            return disabledReasons.get(index) != null;
+        }
+
+        public String getDisabledReason(int index) {
+            return disabledReasons.get(index);
+        }
+
+        public void record(int index, long elapsedNanos) {
+            var nanos = this.nanos.addAndGet(index, elapsedNanos);
+            var nodes = this.nodes.incrementAndGet(index);
+            var total = totalNanos.addAndGet(elapsedNanos);
+            if(nodes % CHECK_INTERVAL != 0 || nodes < MIN_NODES) return;
+
+            var nanosPerNode = nanos / nodes;
+            if(budget.maxNanosPerNode > 0 && nanosPerNode > budget.maxNanosPerNode) {
+                disable(index, nanosPerNode + " ns per node exceeds max_nanos_per_node " + budget.maxNanosPerNode);
+            } else if(budget.maxShare > 0 && rules.size() > 1 && nanos > budget.maxShare * total) {
+                disable(index, String.format("%.0f%% of match time exceeds max_share %.0f%%", 100.0 * nanos / total, 100 * budget.maxShare));
+            }
+        }
+
+        private void disable(int index, String reason) {
+            if(disabledReasons.compareAndSet(index, null, reason)) {
+                listener.accept(rules.get(index), reason);
+            }
+        }
+    }
+}
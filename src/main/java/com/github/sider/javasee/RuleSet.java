@@ -0,0 +1,231 @@
+package com.github.sider.javasee;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.comments.CommentsCollection;
+import com.github.sider.javasee.ast.ContextSummary;
+import com.github.sider.javasee.ast.NodeKind;
+import com.github.sider.javasee.ast.TypeResolver;
+import com.github.sider.javasee.lib.Extentions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.BiPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Rules compiled once, to analyze any number of sources in an application embedding JavaSee.
+ *
+ * A RuleSet never changes its rules, and keeps the state of a match in the calling thread, so one instance can be
+ * shared by concurrent threads.  The rules themselves are not copied, and are shared with the caller and other
+ * RuleSets made of them.  Typed patterns resolve types with the solvers of the type resolver, which are released by
+ * {@link #close()}; a closed RuleSet can still be used, and creates them again.  Each call of analyze parses the source with its own parser and reports
+ * findings to the given sink on the calling thread.
+ *
+ * <pre>
+ * var rules = RuleSet.fromYaml(Files.readString(Path.of("javasee.yml")));
+ * rules.analyze(Path.of("src/Foo.java"), (finding) -> {
+ *     System.out.println(finding.getBegin() + " " + finding.rule.id);
+ *     return true;
+ * });
+ * </pre>
+ */
+public final class RuleSet implements AutoCloseable {
+    private final List<Rule> rules;
+    private final TypeResolver typeResolver;
+    private final ContextSummary.Predicates contextPredicates;
+
+    private RuleSet(List<Rule> rules, TypeResolver typeResolver) {
+        this.rules = List.copyOf(rules);
+        this.typeResolver = typeResolver;
+        this.contextPredicates = Config.contextPredicates(this.rules);
+    }
+
+    public static RuleSet of(List<Rule> rules) {
+        return new RuleSet(rules, TypeResolver.DEFAULT);
+    }
+
+    /**
+     * @param typeResolver resolves types for typed patterns
+     */
+    public static RuleSet of(List<Rule> rules, TypeResolver typeResolver) {
+        return new RuleSet(rules, typeResolver);
+    }
+
+    /**
+     * Compiles rules from YAML, which is either a config file with `rules` or a sequence of rules
+     */
+    public static RuleSet fromYaml(String yaml) {
+        var event = new Events.ConfigLoad();
+        event.begin();
+        Object object;
+        try {
+            object = new Yaml().load(yaml);
+        } catch (YAMLException e) {
+            throw new Exceptions.YamlValidationException("YAML has syntax error: " + e.getMessage(), e);
+        }
+        RuleSet ruleSet;
+        if(object instanceof Map<?, ?>) {
+            var config = Config.load((Map<String, Object>)object, null, null);
+            ruleSet = of(config.rules, config.typeResolver);
+        } else if(object instanceof List<?>) {
+            ruleSet = of(Extentions.single(object).stream().map(map -> Rule.load((Map<String, Object>)map)).collect(Collectors.toList()));
+        } else {
+            throw new Exceptions.InvalidTypeException("rules should be a Map or a List.  However, it's " + object);
+        }
+        event.ruleCount = ruleSet.rules.size();
+        event.commit();
+        return ruleSet;
+    }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    /**
+     * Releases the solvers of the type resolver
+     */
+    @Override
+    public void close() {
+        typeResolver.close();
+    }
+
+    public void analyze(Path path, FindingSink sink) throws IOException, InterruptedException {
+        var source = SourceReader.read(path);
+        analyze(path.toString(), parse(source, path.toString()), sink);
+    }
+
+    public void analyze(String source, FindingSink sink) throws InterruptedException {
+        analyze(null, parse(CharBuffer.wrap(source), null), sink);
+    }
+
+    public void analyze(CompilationUnit unit, FindingSink sink) throws InterruptedException {
+        var path = unit.getStorage().map(storage -> storage.getPath().toString()).orElse(null);
+        analyze(path, unit, sink);
+    }
+
+    private void analyze(String path, CompilationUnit unit, FindingSink sink) throws InterruptedException {
+        var interrupted = new InterruptedException[1];
+        try(var scope = TypeResolver.use(typeResolver)) {
+            match(path, rules, contextPredicates, null, null, new NodePair(unit, null), (rule, pair) -> {
+                try {
+                    return sink.accept(new Finding(path, rule, pair));
+                } catch (InterruptedException e) {
+                    interrupted[0] = e;
+                    return false;
+                }
+            });
+        }
+        if(interrupted[0] != null) throw interrupted[0];
+    }
+
+    private static CompilationUnit parse(CharBuffer source, String path) {
+        var event = new Events.Parse();
+        event.begin();
+        var result = new JavaParser().parse(SourceReader.reader(source));
+        var unit = result.getResult().filter(u -> result.isSuccessful()).orElseThrow(() ->
+                new Exceptions.SourceParseException("Failed to parse " + (path != null ? path : "source") + ": " + result.getProblems())
+        );
+        Suppressions.build(unit, result.getCommentsCollection().map(CommentsCollection::getComments).orElse(new TreeSet<>()), source);
+        event.end();
+        if(event.shouldCommit()) {
+            event.path = path;
+            event.characters = source.remaining();
+            event.nodeCount = unit.findAll(Node.class).size();
+            event.commit();
+        }
+        return unit;
+    }
+
+    /**
+     * Visits the nodes under root in pre-order, and calls consumer for each pair of a rule and a node matched by the
+     * rule.  Stops when consumer returns false, and throws AnalysisCancelledException when the thread is interrupted.
+     * Each node is tested only with the rules having a pattern of its NodeKind.  Context predicates of the patterns are
+     * summarized by ContextSummary.
+     * Findings suppressed inline are not passed to consumer, and rules suppressed in the whole file are not matched.
+     *
+     * @param path path of the source for the events, or null
+     * @param contexts context predicates of the patterns of rules
+     * @param cost cost accounting to skip disabled rules, or null
+     * @param stats statistics to order the patterns of each rule, or null to evaluate them in the given order
+     * @return false if stopped by consumer
+     */
+    static boolean match(String path, List<Rule> rules, ContextSummary.Predicates contexts, RuleBudget.Cost cost, PatternStats stats, NodePair root, BiPredicate<Rule, NodePair> consumer) {
+        var events = new Events.RuleMatch[rules.size()];
+        if(new Events.RuleMatch().isEnabled()) {
+            for(int i = 0; i < events.length; i++) {
+                events[i] = new Events.RuleMatch();
+                events[i].begin();
+            }
+        }
+        var sample = stats != null ? stats.newSample() : null;
+        var suppressions = Suppressions.of(root.node);
+        var rulesByKind = rulesByKind(rules, suppressions);
+        try(var summary = ContextSummary.open(contexts, root.node); var conjuncts = sample != null ? sample.useConjuncts() : null) {
+            var stack = new ArrayDeque<NodePair>();
+            stack.push(root);
+            while(!stack.isEmpty()) {
+                var pair = stack.pop();
+                if(Thread.currentThread().isInterrupted()) throw new Exceptions.AnalysisCancelledException(path);
+                var sampled = sample != null && sample.nextNode();
+                summary.enter(pair);
+                for(int i:rulesByKind[NodeKind.of(pair.node).ordinal()]) {
+                    if(cost != null && cost.isDisabled(i)) continue;
+                    var rule = rules.get(i);
+                    var event = events[i];
+                    var timed = event != null || cost != null;
+                    var start = timed ? System.nanoTime() : 0;
+                    var matched = sample != null ? sample.matches(i, pair, sampled) : rule.patterns.stream().anyMatch(pattern -> pattern.matches(pair));
+                    if(timed) {
+                        var elapsed = System.nanoTime() - start;
+                        if(cost != null) cost.record(i, elapsed);
+                        if(event != null) {
+                            event.matchTime += elapsed;
+                            event.nodeCount++;
+                            if(matched) event.matchCount++;
+                        }
+                    }
+                    if(matched && !suppressions.isSuppressed(rule.id, pair.node) && !consumer.test(rule, pair)) return false;
+                }
+                var children = pair.children();
+                for(int i = children.size() - 1; i >= 0; i--) {
+                    stack.push(children.get(i));
+                }
+            }
+            return true;
+        } finally {
+            if(sample != null) sample.merge();
+            for(int i = 0; i < events.length; i++) {
+                if(events[i] == null) continue;
+                events[i].path = path;
+                events[i].ruleId = rules.get(i).id;
+                events[i].commit();
+            }
+        }
+    }
+
+    /**
+     * @return indexes of the rules to test, for each NodeKind
+     */
+    private static int[][] rulesByKind(List<Rule> rules, Suppressions suppressions) {
+        var kinds = NodeKind.values();
+        var result = new int[kinds.length][];
+        for(var kind:kinds) {
+            result[kind.ordinal()] = IntStream.range(0, rules.size())
+                    .filter(i -> !suppressions.suppressesFile(rules.get(i).id))
+                    .filter(i -> rules.get(i).patterns.stream().anyMatch(pattern -> (pattern.kinds() & kind.bit()) != 0))
+                    .toArray();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,69 @@
+package com.github.sider.javasee;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One of N deterministic partitions of the files to check, written as {@code I/N} (1-origin).
+ * A file belongs to the shard selected by a stable hash of its path relative to the root directory,
+ * so every machine of a CI job computes the same partition regardless of its checkout location.
+ */
+public class Shard {
+    public final int index;
+    public final int count;
+
+    public Shard(int index, int count) {
+        if(count < 1 || index < 1 || index > count) {
+            throw new Exceptions.InvalidOptionException("Invalid shard: " + index + "/" + count + ", expected I/N where 1 <= I <= N");
+        }
+        this.index = index;
+        this.count = count;
+    }
+
+    public static Shard parse(String spec) {
+        var fragments = spec.trim().split("/");
+        if(fragments.length != 2) {
+            throw new Exceptions.InvalidOptionException("Invalid shard: " + spec + ", expected I/N");
+        }
+        try {
+            return new Shard(Integer.parseInt(fragments[0].trim()), Integer.parseInt(fragments[1].trim()));
+        } catch (NumberFormatException e) {
+            throw new Exceptions.InvalidOptionException("Invalid shard: " + spec + ", expected I/N");
+        }
+    }
+
+    public boolean contains(File rootDirectory, File file) {
+        return contains(relativePath(rootDirectory, file));
+    }
+
+    public boolean contains(String relativePath) {
+        return Integer.remainderUnsigned(hash(relativePath), count) == index - 1;
+    }
+
+    /**
+     * Returns '/'-separated path of file from rootDirectory, or normalized absolute path if file is outside of rootDirectory
+     */
+    public static String relativePath(File rootDirectory, File file) {
+        var root = (rootDirectory != null ? rootDirectory : new File(".")).toPath().toAbsolutePath().normalize();
+        var path = file.toPath().toAbsolutePath().normalize();
+        var relative = path.startsWith(root) ? root.relativize(path) : path;
+        return relative.toString().replace(File.separatorChar, '/');
+    }
+
+    /**
+     * 32-bit FNV-1a of UTF-8 bytes, which doesn't depend on JVM implementation
+     */
+    static int hash(String path) {
+        int hash = 0x811c9dc5;
+        for(byte b:path.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= (b & 0xff);
+            hash *= 0x01000193;
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return index + "/" + count;
+    }
+}
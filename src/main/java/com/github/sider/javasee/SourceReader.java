@@ -0,0 +1,94 @@
+package com.github.sider.javasee;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Loads a source file into a CharBuffer with a single decoding pass.
+ * Files of MAP_THRESHOLD bytes or more are memory-mapped and decoded directly from the page cache;
+ * smaller files are read into a byte buffer reused by each thread.
+ * The decoder is also reused by each thread, so that loading many files allocates only the decoded characters.
+ */
+public class SourceReader {
+    public static final long MAP_THRESHOLD = 1024 * 1024;
+
+    private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<CharsetDecoder> decoders = ThreadLocal.withInitial(StandardCharsets.UTF_8::newDecoder);
+
+    private static final ThreadLocal<ByteBuffer> buffers = ThreadLocal.withInitial(() -> ByteBuffer.allocate(INITIAL_BUFFER_SIZE));
+
+    /**
+     * Returns the decoded content of the file, positioned at 0
+     */
+    public static CharBuffer read(Path path) throws IOException {
+        var event = new Events.FileRead();
+        event.begin();
+        try(var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var size = channel.size();
+            event.path = path.toString();
+            event.size = size;
+            event.mapped = size >= MAP_THRESHOLD;
+            ByteBuffer bytes;
+            if(event.mapped) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                bytes = buffers.get();
+                if(bytes.capacity() <= size) {
+                    bytes = ByteBuffer.allocate((int)size + 1);
+                    buffers.set(bytes);
+                }
+                bytes.clear();
+                // the file may grow while being read
+                while(channel.read(bytes) >= 0) {
+                    if(!bytes.hasRemaining()) {
+                        var larger = ByteBuffer.allocate(bytes.capacity() * 2);
+                        bytes.flip();
+                        larger.put(bytes);
+                        bytes = larger;
+                        buffers.set(bytes);
+                    }
+                }
+                bytes.flip();
+            }
+            var source = decode(bytes);
+            event.commit();
+            return source;
+        }
+    }
+
+    public static CharBuffer decode(ByteBuffer bytes) throws CharacterCodingException {
+        return decoders.get().decode(bytes);
+    }
+
+    /**
+     * Reads characters of a CharBuffer without copying them into a String.
+     * Reading fails when the thread is interrupted, which stops the parser fed by the reader.
+     */
+    public static Reader reader(CharBuffer source) {
+        var buffer = source.duplicate();
+        return new Reader() {
+            @Override
+            public int read(char[] chars, int offset, int length) throws IOException {
+                if(Thread.currentThread().isInterrupted()) throw new InterruptedIOException();
+                if(!buffer.hasRemaining()) return -1;
+                var count = Math.min(length, buffer.remaining());
+                buffer.get(chars, offset, count);
+                return count;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+}
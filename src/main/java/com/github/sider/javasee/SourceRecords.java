@@ -0,0 +1,69 @@
+package com.github.sider.javasee;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+
+/**
+ * Reads a stream of (name, content) records, each of which is a header line of two decimal byte lengths
+ * followed by the UTF-8 bytes of the name and the content:
+ *
+ * <pre>
+ * &lt;name length&gt; &lt;content length&gt;\n&lt;name&gt;&lt;content&gt;
+ * </pre>
+ *
+ * Each record is passed to the consumer as soon as it is read, so that a client can keep one process running
+ * and write records one by one.
+ */
+public class SourceRecords {
+    public static void read(InputStream input, BiConsumer<String, CharBuffer> consumer) {
+        try {
+            String header;
+            while((header = readHeader(input)) != null) {
+                var lengths = header.trim().split(" +");
+                int nameLength, contentLength;
+                try {
+                    if(lengths.length != 2) throw new NumberFormatException();
+                    nameLength = Integer.parseInt(lengths[0]);
+                    contentLength = Integer.parseInt(lengths[1]);
+                } catch (NumberFormatException e) {
+                    throw new Exceptions.InvalidInputException("Invalid record header: " + header + ", expected <name length> <content length>");
+                }
+                var name = new String(readBytes(input, nameLength), StandardCharsets.UTF_8);
+                var content = SourceReader.decode(ByteBuffer.wrap(readBytes(input, contentLength)));
+                consumer.accept(name, content);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Returns null at the end of the stream
+     */
+    private static String readHeader(InputStream input) throws IOException {
+        var header = new ByteArrayOutputStream();
+        int b;
+        while((b = input.read()) != '\n') {
+            if(b < 0) {
+                if(header.size() == 0) return null;
+                throw new Exceptions.InvalidInputException("Unexpected end of input in record header");
+            }
+            header.write(b);
+        }
+        return header.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] readBytes(InputStream input, int length) throws IOException {
+        var bytes = input.readNBytes(length);
+        if(bytes.length < length) {
+            throw new Exceptions.InvalidInputException("Unexpected end of input: expected " + length + " bytes but got " + bytes.length);
+        }
+        return bytes;
+    }
+}
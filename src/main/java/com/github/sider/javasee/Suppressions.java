@@ -0,0 +1,244 @@
+package com.github.sider.javasee;
+
+import com.github.javaparser.Position;
+import com.github.javaparser.Range;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.comments.Comment;
+import com.github.javaparser.ast.expr.AnnotationExpr;
+import com.github.javaparser.ast.expr.ArrayInitializerExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.NormalAnnotationExpr;
+import com.github.javaparser.ast.expr.SingleMemberAnnotationExpr;
+import com.github.javaparser.ast.expr.StringLiteralExpr;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Regions of a file where rules are suppressed inline:
+ *
+ * <ul>
+ *     <li>{@code // javasee:ignore rule-id, ...} suppresses the rules in the node the comment belongs to, or in the
+ *     line of the comment if it belongs to no node</li>
+ *     <li>{@code // javasee:ignore-file rule-id, ...} suppresses the rules in the whole file</li>
+ *     <li>{@code @SuppressWarnings("javasee:rule-id")} suppresses the rule in the annotated declaration</li>
+ * </ul>
+ *
+ * Without rule ids ({@code javasee:ignore} or {@code @SuppressWarnings("javasee")}), all rules are suppressed.
+ * The regions of each rule are merged into disjoint sorted intervals, and a finding is looked up by binary search.
+ * Suppressions are built once when a file is parsed, and kept in its CompilationUnit.
+ */
+public class Suppressions {
+    public static final Suppressions NONE = new Suppressions(Map.of(), Set.of());
+
+    private static final DataKey<Suppressions> KEY = new DataKey<>() {};
+    private static final String MARKER = "javasee";
+    private static final String ALL_RULES = "*";
+    private static final Pattern COMMENT = Pattern.compile("\\s*javasee:(ignore|ignore-file)(?![\\w-])(.*)", Pattern.DOTALL);
+
+    /**
+     * Starts and ends of the intervals of each rule id, as encoded positions: [start0, end0, start1, end1, ...]
+     */
+    private final Map<String, long[]> intervals;
+    private final Set<String> fileRules;
+
+    private Suppressions(Map<String, long[]> intervals, Set<String> fileRules) {
+        this.intervals = intervals;
+        this.fileRules = fileRules;
+    }
+
+    /**
+     * Builds suppressions from the comments collected by the parser, and keeps them in unit
+     */
+    public static Suppressions build(CompilationUnit unit, Collection<Comment> comments, CharSequence source) {
+        var suppressions = containsMarker(source) ? new Builder().addComments(comments).addAnnotations(unit).build(unit) : NONE;
+        unit.setData(KEY, suppressions);
+        return suppressions;
+    }
+
+    /**
+     * Returns suppressions kept in unit, or builds them from the comments in the tree
+     */
+    public static Suppressions of(Node root) {
+        if(root.containsData(KEY)) return root.getData(KEY);
+        if(!(root instanceof CompilationUnit)) return NONE;
+        var unit = (CompilationUnit)root;
+        var comments = new ArrayList<Comment>(unit.getAllContainedComments());
+        unit.getComment().ifPresent(comments::add);
+        var suppressions = new Builder().addComments(comments).addAnnotations(unit).build(unit);
+        unit.setData(KEY, suppressions);
+        return suppressions;
+    }
+
+    private static boolean containsMarker(CharSequence source) {
+        int length = source.length() - MARKER.length();
+        for(int i = 0; i <= length; i++) {
+            if(source.charAt(i) != 'j') continue;
+            int j = 1;
+            while(j < MARKER.length() && source.charAt(i + j) == MARKER.charAt(j)) j++;
+            if(j == MARKER.length()) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whether the rule is suppressed in the whole file, so that the file needs not be matched with the rule
+     */
+    public boolean suppressesFile(String ruleId) {
+        return fileRules.contains(ruleId) || fileRules.contains(ALL_RULES);
+    }
+
+    /**
+     * Whether the rule is suppressed at the beginning of the node
+     */
+    public boolean isSuppressed(String ruleId, Node node) {
+        if(this == NONE) return false;
+        if(suppressesFile(ruleId)) return true;
+        var begin = node.getBegin();
+        if(!begin.isPresent()) return false;
+        var position = encode(begin.get());
+        return contains(intervals.get(ruleId), position) || contains(intervals.get(ALL_RULES), position);
+    }
+
+    private static boolean contains(long[] intervals, long position) {
+        if(intervals == null) return false;
+        // the last interval starting at or before position
+        int low = 0, high = intervals.length / 2 - 1, found = -1;
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            if(intervals[middle * 2] <= position) {
+                found = middle;
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return found >= 0 && position <= intervals[found * 2 + 1];
+    }
+
+    private static long encode(Position position) {
+        return ((long)position.line << 32) | (position.column & 0xffffffffL);
+    }
+
+    private static class Builder {
+        private final Map<String, List<long[]>> regions = new HashMap<>();
+        private final Map<String, List<Node>> declarations = new HashMap<>();
+        private final Set<String> fileRules = new HashSet<>();
+
+        Builder addComments(Collection<Comment> comments) {
+            for(var comment:comments) {
+                var matcher = COMMENT.matcher(comment.getContent());
+                if(!matcher.matches() || !comment.getRange().isPresent()) continue;
+                var ids = ruleIds(matcher.group(2));
+                if(matcher.group(1).equals("ignore-file")) {
+                    fileRules.addAll(ids);
+                    continue;
+                }
+                var line = comment.getRange().get().begin.line;
+                var range = comment.getCommentedNode().flatMap(Node::getRange)
+                        .orElse(Range.range(line, 0, comment.getRange().get().end.line, Integer.MAX_VALUE));
+                for(var id:ids) {
+                    add(id, range);
+                }
+            }
+            return this;
+        }
+
+        Builder addAnnotations(CompilationUnit unit) {
+            for(var annotation:unit.findAll(AnnotationExpr.class)) {
+                if(!isSuppressWarnings(annotation)) continue;
+                var declaration = annotation.getParentNode().orElse(null);
+                if(declaration == null || !declaration.getRange().isPresent()) continue;
+                for(var value:values(annotation)) {
+                    if(!(value instanceof StringLiteralExpr)) continue;
+                    var string = ((StringLiteralExpr)value).asString();
+                    String id;
+                    if(string.equals(MARKER)) {
+                        id = ALL_RULES;
+                    } else if(string.startsWith(MARKER + ":")) {
+                        id = string.substring(MARKER.length() + 1).trim();
+                    } else {
+                        continue;
+                    }
+                    add(id, declaration.getRange().get());
+                    declarations.computeIfAbsent(id, k -> new ArrayList<>()).add(declaration);
+                }
+            }
+            return this;
+        }
+
+        private static boolean isSuppressWarnings(AnnotationExpr annotation) {
+            var name = annotation.getNameAsString();
+            return name.equals("SuppressWarnings") || name.equals("java.lang.SuppressWarnings");
+        }
+
+        private static List<Expression> values(AnnotationExpr annotation) {
+            Expression value = null;
+            if(annotation instanceof SingleMemberAnnotationExpr) {
+                value = ((SingleMemberAnnotationExpr)annotation).getMemberValue();
+            } else if(annotation instanceof NormalAnnotationExpr) {
+                for(var pair:((NormalAnnotationExpr)annotation).getPairs()) {
+                    if(pair.getNameAsString().equals("value")) value = pair.getValue();
+                }
+            }
+            if(value instanceof ArrayInitializerExpr) return ((ArrayInitializerExpr)value).getValues();
+            return value != null ? List.of(value) : List.of();
+        }
+
+        private static List<String> ruleIds(String text) {
+            var ids = new ArrayList<String>();
+            for(var id:text.trim().split("[\\s,]+")) {
+                // a comment may continue after ` -- `, such as the reason of the suppression
+                if(id.equals("--")) break;
+                if(!id.isEmpty()) ids.add(id);
+            }
+            if(ids.isEmpty()) ids.add(ALL_RULES);
+            return ids;
+        }
+
+        private void add(String id, Range range) {
+            regions.computeIfAbsent(id, k -> new ArrayList<>()).add(new long[] {encode(range.begin), encode(range.end)});
+        }
+
+        Suppressions build(CompilationUnit unit) {
+            // a rule suppressed in all of the top-level types is suppressed in the file
+            if(!unit.getTypes().isEmpty()) {
+                for(var entry:declarations.entrySet()) {
+                    if(unit.getTypes().stream().allMatch(type -> entry.getValue().stream().anyMatch(declaration -> declaration == type))) {
+                        fileRules.add(entry.getKey());
+                    }
+                }
+            }
+            if(regions.isEmpty() && fileRules.isEmpty()) return NONE;
+            var intervals = new HashMap<String, long[]>();
+            for(var entry:regions.entrySet()) {
+                intervals.put(entry.getKey(), merge(entry.getValue()));
+            }
+            return new Suppressions(intervals, fileRules);
+        }
+
+        private static long[] merge(List<long[]> regions) {
+            regions.sort((a, b) -> Long.compare(a[0], b[0]));
+            var result = new long[regions.size() * 2];
+            int count = 0;
+            for(var region:regions) {
+                if(count > 0 && region[0] <= result[count - 1]) {
+                    result[count - 1] = Math.max(result[count - 1], region[1]);
+                } else {
+                    result[count++] = region[0];
+                    result[count++] = region[1];
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+    }
+}
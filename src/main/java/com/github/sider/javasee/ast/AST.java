@@ -1,29 +1,66 @@
 package com.github.sider.javasee.ast;
 
 import com.github.javaparser.ast.ArrayCreationLevel;
+import com.github.javaparser.ast.Modifier;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.BodyDeclaration;
 import com.github.javaparser.ast.expr.*;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.ExpressionStmt;
+import com.github.javaparser.ast.stmt.ForEachStmt;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.ReturnStmt;
+import com.github.javaparser.ast.stmt.SynchronizedStmt;
+import com.github.javaparser.ast.stmt.ThrowStmt;
+import com.github.javaparser.ast.stmt.TryStmt;
+import com.github.javaparser.ast.stmt.WhileStmt;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import com.github.javaparser.ast.type.PrimitiveType;
 import com.github.javaparser.ast.type.Type;
+import com.github.javaparser.ast.type.UnionType;
 import com.github.sider.javasee.NodePair;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.ToString;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class AST {
     public static abstract class PatternNode {
         public abstract Location getLocation();
         public boolean matches(NodePair pair) {
-            return testNode(pair.node);
+            return test(pair.node);
         }
         public boolean testNode(Node node) {
             return false;
         }
+
+        /**
+         * Returns the nodes bound to the metavariables by matching the pair, or null if the pair doesn't match
+         */
+        public Map<String, Node> bindings(NodePair pair) {
+            return matches(pair) ? Map.of() : null;
+        }
+
+        /**
+         * Tests the node
+         */
+        public final boolean test(Node node) {
+            return testNode(node);
+        }
+
+        /**
+         * Bit set of the NodeKinds which this pattern can match
+         */
+        public int kinds() {
+            return NodeKind.ALL;
+        }
     }
 
     public static class Kind {
@@ -53,6 +90,24 @@ public class AST {
     }
 
     public static abstract class Expression extends PatternNode {
+        @Override
+        public int kinds() {
+            return NodeKind.EXPRESSION.bit();
+        }
+    }
+
+    public static abstract class Statement extends PatternNode {
+        @Override
+        public int kinds() {
+            return NodeKind.STATEMENT.bit();
+        }
+    }
+
+    public static abstract class Declaration extends PatternNode {
+        @Override
+        public int kinds() {
+            return NodeKind.DECLARATION.bit();
+        }
     }
 
     @AllArgsConstructor
@@ -140,8 +195,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof ArrayAccessExpr)) return false;
             var expr = (ArrayAccessExpr) node;
-            if (!lhs.testNode(expr.getName())) return false;
-            return rhs.testNode(expr.getIndex());
+            if (!lhs.test(expr.getName())) return false;
+            return rhs.test(expr.getIndex());
         }
 
     }
@@ -163,7 +218,7 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof UnaryExpr)) return false;
             var expr = (UnaryExpr) node;
-            if(!expression.testNode(expr)) return false;
+            if(!expression.test(expr)) return false;
             if(!expr.getOperator().equals(UnaryExpr.Operator.PLUS)) return false;
             return true;
         }
@@ -180,7 +235,7 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof UnaryExpr)) return false;
             var expr = (UnaryExpr) node;
-            if(!expression.testNode(expr)) return false;
+            if(!expression.test(expr)) return false;
             if(!expr.getOperator().equals(UnaryExpr.Operator.MINUS)) return false;
             return true;
         }
@@ -195,7 +250,7 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof UnaryExpr)) return false;
             var expr = (UnaryExpr) node;
-            if(!expression.testNode(expr)) return false;
+            if(!expression.test(expr)) return false;
             if(!expr.getOperator().equals(UnaryExpr.Operator.LOGICAL_COMPLEMENT)) return false;
             return true;
         }
@@ -211,14 +266,13 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof UnaryExpr)) return false;
             var expr = (UnaryExpr) node;
-            if(!expression.testNode(expr)) return false;
+            if(!expression.test(expr)) return false;
             if(!expr.getOperator().equals(UnaryExpr.Operator.BITWISE_COMPLEMENT)) return false;
             return true;
         }
 
     }
 
-    @AllArgsConstructor
     @Getter
     @ToString
     public static abstract class BinaryExpression extends Expression {
@@ -226,6 +280,32 @@ public class AST {
         public final String symbol;
         public final Expression lhs;
         public final Expression rhs;
+        /**
+         * Number of the operands in {@link ConjunctOrder}, or -1 if not numbered
+         */
+        @ToString.Exclude
+        @Getter(AccessLevel.NONE)
+        int conjunct = -1;
+
+        public BinaryExpression(Location location, String symbol, Expression lhs, Expression rhs) {
+            this.location = location;
+            this.symbol = symbol;
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        /**
+         * Tests both operands, starting from the one more likely to reject cheaply
+         */
+        protected boolean testOperands(Node left, Node right) {
+            var order = ConjunctOrder.current();
+            if(order == null || conjunct < 0) return lhs.test(left) && rhs.test(right);
+            if(order.isSwapped(conjunct)) {
+                return order.record(conjunct, 1, rhs.test(right)) && order.record(conjunct, 0, lhs.test(left));
+            } else {
+                return order.record(conjunct, 0, lhs.test(left)) && order.record(conjunct, 1, rhs.test(right));
+            }
+        }
     }
 
     public static abstract class RelationalExpression extends BinaryExpression {
@@ -249,9 +329,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof AssignExpr)) return false;
             var expr = (AssignExpr) node;
-            if(!lhs.testNode(expr.getTarget())) return false;
-            if(!rhs.testNode(expr.getValue())) return false;
             if(!expr.getOperator().equals(AssignExpr.Operator.ASSIGN)) return false;
+            if(!testOperands(expr.getTarget(), expr.getValue())) return false;
             return true;
         }
 
@@ -266,9 +345,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof AssignExpr)) return false;
             var expr = (AssignExpr) node;
-            if(!lhs.testNode(expr.getTarget())) return false;
-            if(!rhs.testNode(expr.getValue())) return false;
             if(!expr.getOperator().equals(AssignExpr.Operator.PLUS)) return false;
+            if(!testOperands(expr.getTarget(), expr.getValue())) return false;
             return true;
         }
 
@@ -283,9 +361,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof AssignExpr)) return false;
             var expr = (AssignExpr) node;
-            if(!lhs.testNode(expr.getTarget())) return false;
-            if(!rhs.testNode(expr.getValue())) return false;
             if(!expr.getOperator().equals(AssignExpr.Operator.MINUS)) return false;
+            if(!testOperands(expr.getTarget(), expr.getValue())) return false;
             return true;
         }
 
@@ -300,9 +377,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof AssignExpr)) return false;
             var expr = (AssignExpr) node;
-            if(!lhs.testNode(expr.getTarget())) return false;
-            if(!rhs.testNode(expr.getValue())) return false;
             if(!expr.getOperator().equals(AssignExpr.Operator.ASSIGN)) return false;
+            if(!testOperands(expr.getTarget(), expr.getValue())) return false;
             return true;
         }
 
@@ -317,9 +393,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof AssignExpr)) return false;
             var expr = (AssignExpr) node;
-            if(!lhs.testNode(expr.getTarget())) return false;
-            if(!rhs.testNode(expr.getValue())) return false;
             if(!expr.getOperator().equals(AssignExpr.Operator.DIVIDE)) return false;
+            if(!testOperands(expr.getTarget(), expr.getValue())) return false;
             return true;
         }
 
@@ -334,9 +409,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof AssignExpr)) return false;
             var expr = (AssignExpr) node;
-            if(!lhs.testNode(expr.getTarget())) return false;
-            if(!rhs.testNode(expr.getValue())) return false;
             if(!expr.getOperator().equals(AssignExpr.Operator.REMAINDER)) return false;
+            if(!testOperands(expr.getTarget(), expr.getValue())) return false;
             return true;
         }
 
@@ -351,9 +425,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof AssignExpr)) return false;
             var expr = (AssignExpr) node;
-            if(!lhs.testNode(expr.getTarget())) return false;
-            if(!rhs.testNode(expr.getValue())) return false;
             if(!expr.getOperator().equals(AssignExpr.Operator.BINARY_AND)) return false;
+            if(!testOperands(expr.getTarget(), expr.getValue())) return false;
             return true;
         }
 
@@ -368,9 +441,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof AssignExpr)) return false;
             var expr = (AssignExpr) node;
-            if(!lhs.testNode(expr.getTarget())) return false;
-            if(!rhs.testNode(expr.getValue())) return false;
             if(!expr.getOperator().equals(AssignExpr.Operator.BINARY_OR)) return false;
+            if(!testOperands(expr.getTarget(), expr.getValue())) return false;
             return true;
         }
 
@@ -385,9 +457,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof AssignExpr)) return false;
             var expr = (AssignExpr) node;
-            if(!lhs.testNode(expr.getTarget())) return false;
-            if(!rhs.testNode(expr.getValue())) return false;
             if(!expr.getOperator().equals(AssignExpr.Operator.XOR)) return false;
+            if(!testOperands(expr.getTarget(), expr.getValue())) return false;
             return true;
         }
 
@@ -402,9 +473,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof BinaryExpr)) return false;
             var expr = (BinaryExpr) node;
-            if(!lhs.testNode(expr.getLeft())) return false;
-            if(!rhs.testNode(expr.getRight())) return false;
             if(!expr.getOperator().equals(BinaryExpr.Operator.PLUS)) return false;
+            if(!testOperands(expr.getLeft(), expr.getRight())) return false;
             return true;
         }
 
@@ -419,9 +489,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof BinaryExpr)) return false;
             var expr = (BinaryExpr) node;
-            if(!lhs.testNode(expr.getLeft())) return false;
-            if(!rhs.testNode(expr.getRight())) return false;
             if(!expr.getOperator().equals(BinaryExpr.Operator.BINARY_AND)) return false;
+            if(!testOperands(expr.getLeft(), expr.getRight())) return false;
             return true;
         }
 
@@ -436,9 +505,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof BinaryExpr)) return false;
             var expr = (BinaryExpr) node;
-            if(!lhs.testNode(expr.getLeft())) return false;
-            if(!rhs.testNode(expr.getRight())) return false;
             if(!expr.getOperator().equals(BinaryExpr.Operator.BINARY_OR)) return false;
+            if(!testOperands(expr.getLeft(), expr.getRight())) return false;
             return true;
         }
 
@@ -453,9 +521,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof BinaryExpr)) return false;
             var expr = (BinaryExpr) node;
-            if(!lhs.testNode(expr.getLeft())) return false;
-            if(!rhs.testNode(expr.getRight())) return false;
             if(!expr.getOperator().equals(BinaryExpr.Operator.XOR)) return false;
+            if(!testOperands(expr.getLeft(), expr.getRight())) return false;
             return true;
         }
 
@@ -474,9 +541,9 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof ConditionalExpr)) return false;
             var expr = (ConditionalExpr) node;
-            if(!condition.testNode(expr.getCondition())) return false;
-            if(!thenPart.testNode(expr.getThenExpr())) return false;
-            if(!elsepart.testNode(expr.getElseExpr())) return false;
+            if(!condition.test(expr.getCondition())) return false;
+            if(!thenPart.test(expr.getThenExpr())) return false;
+            if(!elsepart.test(expr.getElseExpr())) return false;
             return true;
         }
 
@@ -491,9 +558,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof BinaryExpr)) return false;
             var expr = (BinaryExpr) node;
-            if(!lhs.testNode(expr.getLeft())) return false;
-            if(!rhs.testNode(expr.getRight())) return false;
             if(!expr.getOperator().equals(BinaryExpr.Operator.AND)) return false;
+            if(!testOperands(expr.getLeft(), expr.getRight())) return false;
             return true;
         }
 
@@ -508,9 +574,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof BinaryExpr)) return false;
             var expr = (BinaryExpr) node;
-            if(!lhs.testNode(expr.getLeft())) return false;
-            if(!rhs.testNode(expr.getRight())) return false;
             if(!expr.getOperator().equals(BinaryExpr.Operator.OR)) return false;
+            if(!testOperands(expr.getLeft(), expr.getRight())) return false;
             return true;
         }
 
@@ -525,9 +590,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof BinaryExpr)) return false;
             var expr = (BinaryExpr) node;
-            if(!lhs.testNode(expr.getLeft())) return false;
-            if(!rhs.testNode(expr.getRight())) return false;
             if(!expr.getOperator().equals(BinaryExpr.Operator.MINUS)) return false;
+            if(!testOperands(expr.getLeft(), expr.getRight())) return false;
             return true;
         }
 
@@ -542,9 +606,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof BinaryExpr)) return false;
             var expr = (BinaryExpr) node;
-            if(!lhs.testNode(expr.getLeft())) return false;
-            if(!rhs.testNode(expr.getRight())) return false;
             if(!expr.getOperator().equals(BinaryExpr.Operator.MULTIPLY)) return false;
+            if(!testOperands(expr.getLeft(), expr.getRight())) return false;
             return true;
         }
 
@@ -559,9 +622,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof BinaryExpr)) return false;
             var expr = (BinaryExpr) node;
-            if(!lhs.testNode(expr.getLeft())) return false;
-            if(!rhs.testNode(expr.getRight())) return false;
             if(!expr.getOperator().equals(BinaryExpr.Operator.DIVIDE)) return false;
+            if(!testOperands(expr.getLeft(), expr.getRight())) return false;
             return true;
         }
 
@@ -576,9 +638,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof BinaryExpr)) return false;
             var expr = (BinaryExpr) node;
-            if(!lhs.testNode(expr.getLeft())) return false;
-            if(!rhs.testNode(expr.getRight())) return false;
             if(!expr.getOperator().equals(BinaryExpr.Operator.REMAINDER)) return false;
+            if(!testOperands(expr.getLeft(), expr.getRight())) return false;
             return true;
         }
     }
@@ -592,9 +653,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof BinaryExpr)) return false;
             var expr = (BinaryExpr) node;
-            if(!lhs.testNode(expr.getLeft())) return false;
-            if(!rhs.testNode(expr.getRight())) return false;
             if(!expr.getOperator().equals(BinaryExpr.Operator.EQUALS)) return false;
+            if(!testOperands(expr.getLeft(), expr.getRight())) return false;
             return true;
         }
     }
@@ -608,9 +668,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof BinaryExpr)) return false;
             var expr = (BinaryExpr) node;
-            if(!lhs.testNode(expr.getLeft())) return false;
-            if(!rhs.testNode(expr.getRight())) return false;
             if(!expr.getOperator().equals(BinaryExpr.Operator.NOT_EQUALS)) return false;
+            if(!testOperands(expr.getLeft(), expr.getRight())) return false;
             return true;
         }
     }
@@ -625,9 +684,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof BinaryExpr)) return false;
             var expr = (BinaryExpr) node;
-            if(!lhs.testNode(expr.getLeft())) return false;
-            if(!rhs.testNode(expr.getRight())) return false;
             if(!expr.getOperator().equals(BinaryExpr.Operator.GREATER_EQUALS)) return false;
+            if(!testOperands(expr.getLeft(), expr.getRight())) return false;
             return true;
         }
     }
@@ -641,9 +699,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof BinaryExpr)) return false;
             var expr = (BinaryExpr) node;
-            if(!lhs.testNode(expr.getLeft())) return false;
-            if(!rhs.testNode(expr.getRight())) return false;
             if(!expr.getOperator().equals(BinaryExpr.Operator.GREATER)) return false;
+            if(!testOperands(expr.getLeft(), expr.getRight())) return false;
             return true;
         }
     }
@@ -657,9 +714,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof BinaryExpr)) return false;
             var expr = (BinaryExpr) node;
-            if(!lhs.testNode(expr.getLeft())) return false;
-            if(!rhs.testNode(expr.getRight())) return false;
             if(!expr.getOperator().equals(BinaryExpr.Operator.LESS_EQUALS)) return false;
+            if(!testOperands(expr.getLeft(), expr.getRight())) return false;
             return true;
         }
     }
@@ -673,9 +729,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof BinaryExpr)) return false;
             var expr = (BinaryExpr) node;
-            if(!lhs.testNode(expr.getLeft())) return false;
-            if(!rhs.testNode(expr.getRight())) return false;
             if(!expr.getOperator().equals(BinaryExpr.Operator.LESS)) return false;
+            if(!testOperands(expr.getLeft(), expr.getRight())) return false;
             return true;
         }
     }
@@ -689,9 +744,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof BinaryExpr)) return false;
             var expr = (BinaryExpr) node;
-            if(!lhs.testNode(expr.getLeft())) return false;
-            if(!rhs.testNode(expr.getRight())) return false;
             if(!expr.getOperator().equals(BinaryExpr.Operator.LEFT_SHIFT)) return false;
+            if(!testOperands(expr.getLeft(), expr.getRight())) return false;
             return true;
         }
     }
@@ -705,9 +759,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof BinaryExpr)) return false;
             var expr = (BinaryExpr) node;
-            if(!lhs.testNode(expr.getLeft())) return false;
-            if(!rhs.testNode(expr.getRight())) return false;
             if(!expr.getOperator().equals(BinaryExpr.Operator.SIGNED_RIGHT_SHIFT)) return false;
+            if(!testOperands(expr.getLeft(), expr.getRight())) return false;
             return true;
         }
     }
@@ -721,9 +774,8 @@ public class AST {
         public boolean testNode(Node node) {
             if (!(node instanceof BinaryExpr)) return false;
             var expr = (BinaryExpr) node;
-            if(!lhs.testNode(expr.getLeft())) return false;
-            if(!rhs.testNode(expr.getRight())) return false;
             if(!expr.getOperator().equals(BinaryExpr.Operator.UNSIGNED_RIGHT_SHIFT)) return false;
+            if(!testOperands(expr.getLeft(), expr.getRight())) return false;
             return true;
         }
     }
@@ -741,7 +793,7 @@ public class AST {
         public boolean testNode(Node node) {
             if(node instanceof InstanceOfExpr) {
                 var instanceofExpr = (InstanceOfExpr)node;
-                if(target.testNode(instanceofExpr.getExpression())) return false;
+                if(target.test(instanceofExpr.getExpression())) return false;
                 if (type instanceof AST.PlaceholderTypeNode) {
                     return true;
                 } else {
@@ -769,7 +821,7 @@ public class AST {
             for(int i = 0; i < size; i++) {
                 var p1 = this.parameters.get(i);
                 var p2 = parameters.get(i);
-                if(!p1.testNode(p2)) return false;
+                if(!p1.test(p2)) return false;
             }
             return true;
         }
@@ -802,7 +854,7 @@ public class AST {
             for(int i = 0; i < size; i++) {
                 var l1 = this.levels.get(i);
                 var l2 = levels.get(i);
-                if(!l1.testNode(l2)) return false;
+                if(!l1.test(l2)) return false;
             }
             return true;
         }
@@ -827,7 +879,6 @@ public class AST {
         }
     }
 
-    @AllArgsConstructor
     @Getter
     @ToString
     public static class MethodCall extends Expression {
@@ -835,6 +886,19 @@ public class AST {
         public final Expression receiver;
         public final String name;
         public final List<Expression> parameters;
+        /**
+         * Number of the receiver and the arguments in {@link ConjunctOrder}, or -1 if not numbered
+         */
+        @ToString.Exclude
+        @Getter(AccessLevel.NONE)
+        int conjunct = -1;
+
+        public MethodCall(Location location, Expression receiver, String name, List<Expression> parameters) {
+            this.location = location;
+            this.receiver = receiver;
+            this.name = name;
+            this.parameters = parameters;
+        }
 
         private boolean testReceiver(Optional<com.github.javaparser.ast.expr.Expression> receiver) {
             if(this.receiver != null && !receiver.isPresent()) return false;
@@ -842,7 +906,7 @@ public class AST {
             if(this.receiver == null) {
                 return true;
             } else {
-                return this.receiver.testNode(receiver.get());
+                return this.receiver.test(receiver.get());
             }
         }
 
@@ -853,7 +917,7 @@ public class AST {
             for(int i = 0; i < size; i++) {
                 var p1 = this.parameters.get(i);
                 var p2 = parameters.get(i);
-                if(!p1.testNode(p2)) return false;
+                if(!p1.test(p2)) return false;
             }
             return true;
         }
@@ -863,9 +927,13 @@ public class AST {
             if(node instanceof MethodCallExpr) {
                 var call = (MethodCallExpr)node;
                 if(!call.getName().asString().equals(name)) return false;
-                if(!testReceiver(((MethodCallExpr) node).getScope())) return false;
-                if(!testArgs(((MethodCallExpr) node).getArguments())) return false;
-                return true;
+                var order = ConjunctOrder.current();
+                if(order == null || conjunct < 0) return testReceiver(call.getScope()) && testArgs(call.getArguments());
+                if(order.isSwapped(conjunct)) {
+                    return order.record(conjunct, 1, testArgs(call.getArguments())) && order.record(conjunct, 0, testReceiver(call.getScope()));
+                } else {
+                    return order.record(conjunct, 0, testReceiver(call.getScope())) && order.record(conjunct, 1, testArgs(call.getArguments()));
+                }
             } else {
                 return false;
             }
@@ -887,7 +955,7 @@ public class AST {
             for(int i = 0; i < size; i++) {
                 var p1 = this.parameters.get(i);
                 var p2 = parameters.get(i);
-                if(!p1.testNode(p2)) return false;
+                if(!p1.test(p2)) return false;
             }
             return true;
         }
@@ -919,7 +987,7 @@ public class AST {
             if(!(node instanceof FieldAccessExpr)) return false;
             var expr = (FieldAccessExpr)node;
             if(!this.name.equals(expr.getNameAsString())) return false;
-            return this.receiver.testNode(expr.getScope());
+            return this.receiver.test(expr.getScope());
         }
     }
 
@@ -935,7 +1003,7 @@ public class AST {
             if(!(node instanceof UnaryExpr)) return false;
             var expr = (UnaryExpr)node;
             if(!expr.getOperator().equals(UnaryExpr.Operator.PREFIX_INCREMENT)) return false;
-            return this.target.testNode(expr.getExpression());
+            return this.target.test(expr.getExpression());
         }
     }
 
@@ -951,7 +1019,7 @@ public class AST {
             if(!(node instanceof UnaryExpr)) return false;
             var expr = (UnaryExpr)node;
             if(!expr.getOperator().equals(UnaryExpr.Operator.PREFIX_DECREMENT)) return false;
-            return this.target.testNode(expr.getExpression());
+            return this.target.test(expr.getExpression());
         }
     }
 
@@ -967,7 +1035,7 @@ public class AST {
             if(!(node instanceof UnaryExpr)) return false;
             var expr = (UnaryExpr)node;
             if(!expr.getOperator().equals(UnaryExpr.Operator.POSTFIX_INCREMENT)) return false;
-            return this.target.testNode(expr.getExpression());
+            return this.target.test(expr.getExpression());
         }
     }
 
@@ -983,7 +1051,178 @@ public class AST {
             if(!(node instanceof UnaryExpr)) return false;
             var expr = (UnaryExpr)node;
             if(!expr.getOperator().equals(UnaryExpr.Operator.POSTFIX_DECREMENT)) return false;
-            return this.target.testNode(expr.getExpression());
+            return this.target.test(expr.getExpression());
+        }
+    }
+
+    /**
+     * `$name` matches any expression like `_` and binds it to the name.  Later occurrences of the name in the same
+     * pattern match only an expression structurally equal to the bound one.  `$$name` is the identifier `$name`.
+     */
+    @Getter
+    @ToString
+    public static class Metavariable extends Expression {
+        public final Location location;
+        public final String name;
+
+        /**
+         * Index in Bindings, assigned by Constrained, or -1 outside of a pattern compiled by Constrained
+         */
+        @ToString.Exclude
+        @Getter(AccessLevel.NONE)
+        int slot = -1;
+
+        public Metavariable(Location location, String name) {
+            this.location = location;
+            this.name = name;
+        }
+
+        @Override
+        public int kinds() {
+            return NodeKind.ALL;
+        }
+
+        @Override
+        public boolean testNode(Node node) {
+            if(slot < 0) return true;
+            var bindings = Bindings.current();
+            var bound = bindings.get(slot);
+            if(bound == null) {
+                bindings.set(slot, node);
+                return true;
+            }
+            // the hash rejects most different expressions without walking them
+            return bound == node || (SubtreeHash.of(bound) == SubtreeHash.of(node) && SubtreeHash.same(bound, node));
+        }
+    }
+
+    /**
+     * A pattern with metavariables and `where` constraints.  Metavariables are unbound for each node tested, and the
+     * constraints are tested only after the pattern matched.
+     */
+    @Getter
+    @ToString
+    public static class Constrained extends PatternNode {
+        public final Location location;
+        public final PatternNode expression;
+        public final List<Constraint> constraints;
+
+        /**
+         * Name of the metavariable of each slot
+         */
+        @Getter(AccessLevel.NONE)
+        @ToString.Exclude
+        private final String[] slotNames;
+
+        /**
+         * Slot of the metavariable of each constraint
+         */
+        @Getter(AccessLevel.NONE)
+        @ToString.Exclude
+        private final int[] constraintSlots;
+
+        public Constrained(Location location, PatternNode expression, List<Constraint> constraints) {
+            this.location = location;
+            this.expression = expression;
+            this.constraints = constraints;
+            var slots = new HashMap<String, Integer>();
+            for(var metavariable:PatternTable.metavariableNodes(expression)) {
+                metavariable.slot = slots.computeIfAbsent(metavariable.name, name -> slots.size());
+            }
+            this.slotNames = new String[slots.size()];
+            slots.forEach((name, slot) -> slotNames[slot] = name);
+            this.constraintSlots = constraints.stream().mapToInt(constraint -> slots.get(constraint.variable)).toArray();
+        }
+
+        /**
+         * @return the pattern compiled for metavariables and the constraints, or the pattern itself if unnecessary
+         */
+        public static PatternNode of(PatternNode expression, List<Constraint> constraints) {
+            if(constraints.isEmpty() && PatternTable.metavariableNodes(expression).isEmpty()) return expression;
+            return new Constrained(expression.getLocation(), expression, constraints);
+        }
+
+        @Override
+        public int kinds() {
+            return expression.kinds();
+        }
+
+        @Override
+        public boolean testNode(Node node) {
+            var bindings = Bindings.current();
+            bindings.reset(slotNames.length);
+            if(!expression.test(node)) return false;
+            for(int i = 0; i < constraintSlots.length; i++) {
+                var bound = bindings.get(constraintSlots[i]);
+                if(bound == null || !constraints.get(i).test(bound)) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public Map<String, Node> bindings(NodePair pair) {
+            if(!testNode(pair.node)) return null;
+            var bindings = Bindings.current();
+            var result = new HashMap<String, Node>();
+            for(int i = 0; i < slotNames.length; i++) {
+                if(bindings.get(i) != null) result.put(slotNames[i], bindings.get(i));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A pattern matching a node only in the context.  `inside` and `notInside` are tested on the ancestors of the
+     * node, and `has` on its descendants, where each of them is satisfied by any of its patterns.
+     */
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class Contextual extends PatternNode {
+        public final Location location;
+        public final PatternNode pattern;
+        public final List<PatternNode> inside;
+        public final List<PatternNode> notInside;
+        public final List<PatternNode> has;
+
+        @Override
+        public int kinds() {
+            return pattern.kinds();
+        }
+
+        @Override
+        public boolean testNode(Node node) {
+            return pattern.test(node) && ContextSummary.test(this, node);
+        }
+
+        @Override
+        public Map<String, Node> bindings(NodePair pair) {
+            // The predicates may rebind the slots, so the pattern is tested again
+            return matches(pair) ? pattern.bindings(pair) : null;
+        }
+    }
+
+    /**
+     * `(pattern : Type)` matches an expression matched by the pattern, whose type is the type or its subtype
+     */
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class TypedExpression extends Expression {
+        public final Location location;
+        public final Expression expression;
+        public final String typeName;
+
+        @Override
+        public int kinds() {
+            return expression.kinds();
+        }
+
+        @Override
+        public boolean testNode(Node node) {
+            // the type is resolved only after the cheap structural check passed
+            if(!expression.test(node)) return false;
+            return TypeResolver.current().hasType(node, typeName);
         }
     }
 
@@ -993,6 +1232,11 @@ public class AST {
     public static class Wildcard extends Expression {
         public final Location location;
 
+        @Override
+        public int kinds() {
+            return NodeKind.ALL;
+        }
+
         @Override
         public boolean testNode(Node node) {
             return true;
@@ -1210,4 +1454,397 @@ public class AST {
             return node instanceof StringLiteralExpr;
         }
     }
+
+    /**
+     * Whether a name in a pattern refers to a name in source, where either of them may be qualified
+     */
+    static boolean nameMatches(String pattern, String name) {
+        return name.equals(pattern) || name.endsWith("." + pattern) || pattern.endsWith("." + name);
+    }
+
+    /**
+     * Tests a type in source against a type name in a pattern, ignoring type arguments.  null matches any type.
+     */
+    static boolean typeMatches(String pattern, Type type) {
+        if(pattern == null) return true;
+        if(type instanceof UnionType) {
+            for(var element:((UnionType)type).getElements()) {
+                if(typeMatches(pattern, element)) return true;
+            }
+            return false;
+        }
+        return nameMatches(pattern, eraseTypeArguments(type.asString()));
+    }
+
+    private static String eraseTypeArguments(String name) {
+        if(name.indexOf('<') < 0) return name;
+        var builder = new StringBuilder();
+        int depth = 0;
+        for(int i = 0; i < name.length(); i++) {
+            char ch = name.charAt(i);
+            if(ch == '<') {
+                depth++;
+            } else if(ch == '>') {
+                depth--;
+            } else if(depth == 0) {
+                builder.append(ch);
+            }
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Matches nodes from index j against patterns from index i, where `...` matches any number of nodes.  The
+     * metavariables bound while trying a number of nodes for `...` are unbound before trying the next number.
+     */
+    static boolean matchesSequence(List<? extends PatternNode> patterns, int i, List<? extends Node> nodes, int j) {
+        if(i == patterns.size()) return j == nodes.size();
+        if(patterns.get(i) instanceof AnyStatements) {
+            var bindings = Bindings.current();
+            var saved = bindings.save();
+            for(int k = j; k <= nodes.size(); k++) {
+                if(matchesSequence(patterns, i + 1, nodes, k)) return true;
+                bindings.restore(saved);
+            }
+            return false;
+        }
+        return j < nodes.size() && patterns.get(i).test(nodes.get(j)) && matchesSequence(patterns, i + 1, nodes, j + 1);
+    }
+
+    /**
+     * `expression;`
+     */
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class ExpressionStatement extends Statement {
+        public final Location location;
+        public final Expression expression;
+
+        @Override
+        public boolean testNode(Node node) {
+            if(!(node instanceof ExpressionStmt)) return false;
+            return expression.test(((ExpressionStmt)node).getExpression());
+        }
+    }
+
+    /**
+     * `{ statement ... }` matches a block of the statements, where `...` matches any number of statements
+     */
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class Block extends Statement {
+        public final Location location;
+        public final List<Statement> statements;
+
+        @Override
+        public boolean testNode(Node node) {
+            if(!(node instanceof BlockStmt)) return false;
+            return matchesSequence(statements, 0, ((BlockStmt)node).getStatements(), 0);
+        }
+    }
+
+    /**
+     * `...` in a block, which matches any number of statements
+     */
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class AnyStatements extends Statement {
+        public final Location location;
+
+        @Override
+        public boolean testNode(Node node) {
+            return false;
+        }
+    }
+
+    /**
+     * `try { ... } catch (Type name) { ... } finally { ... }`.  The catch clauses match some of the catch clauses in
+     * source in order, and the statement may have a finally block unless the pattern has.
+     */
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class TryStatement extends Statement {
+        public final Location location;
+        public final Block body;
+        public final List<CatchClause> catchClauses;
+        public final Block finallyBlock;
+
+        @Override
+        public boolean testNode(Node node) {
+            if(!(node instanceof TryStmt)) return false;
+            var stmt = (TryStmt)node;
+            if(!body.test(stmt.getTryBlock())) return false;
+            return matchesCatchClauses(0, stmt, 0);
+        }
+
+        /**
+         * Matches the catch clauses from index j in source against the clauses from index i in the pattern and then
+         * the finally block, undoing the bindings of a failed choice of clause before trying the next one
+         */
+        private boolean matchesCatchClauses(int i, TryStmt stmt, int j) {
+            if(i == catchClauses.size()) {
+                if(finallyBlock == null) return true;
+                return stmt.getFinallyBlock().isPresent() && finallyBlock.test(stmt.getFinallyBlock().get());
+            }
+            var clauses = stmt.getCatchClauses();
+            var bindings = Bindings.current();
+            var saved = bindings.save();
+            for(int k = j; k < clauses.size(); k++) {
+                if(catchClauses.get(i).test(clauses.get(k)) && matchesCatchClauses(i + 1, stmt, k + 1)) return true;
+                bindings.restore(saved);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * `catch (Type name) { ... }` in a try statement, where `_` matches any type or name
+     */
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class CatchClause extends PatternNode {
+        public final Location location;
+        public final String typeName;
+        public final String name;
+        public final Block body;
+
+        @Override
+        public int kinds() {
+            return NodeKind.OTHER.bit();
+        }
+
+        @Override
+        public boolean testNode(Node node) {
+            if(!(node instanceof com.github.javaparser.ast.stmt.CatchClause)) return false;
+            var clause = (com.github.javaparser.ast.stmt.CatchClause)node;
+            if(!typeMatches(typeName, clause.getParameter().getType())) return false;
+            if(name != null && !clause.getParameter().getNameAsString().equals(name)) return false;
+            return body.test(clause.getBody());
+        }
+    }
+
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class SynchronizedStatement extends Statement {
+        public final Location location;
+        public final Expression lock;
+        public final Block body;
+
+        @Override
+        public boolean testNode(Node node) {
+            if(!(node instanceof SynchronizedStmt)) return false;
+            var stmt = (SynchronizedStmt)node;
+            return lock.test(stmt.getExpression()) && body.test(stmt.getBody());
+        }
+    }
+
+    /**
+     * `if (condition) statement else statement`, where the statement may have an else part unless the pattern has
+     */
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class IfStatement extends Statement {
+        public final Location location;
+        public final Expression condition;
+        public final Statement thenStatement;
+        public final Statement elseStatement;
+
+        @Override
+        public boolean testNode(Node node) {
+            if(!(node instanceof IfStmt)) return false;
+            var stmt = (IfStmt)node;
+            if(!condition.test(stmt.getCondition()) || !thenStatement.test(stmt.getThenStmt())) return false;
+            if(elseStatement == null) return true;
+            return stmt.getElseStmt().isPresent() && elseStatement.test(stmt.getElseStmt().get());
+        }
+    }
+
+    /**
+     * `while (condition) statement`, where `while (condition)` matches any body
+     */
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class WhileStatement extends Statement {
+        public final Location location;
+        public final Expression condition;
+        public final Statement body;
+
+        @Override
+        public boolean testNode(Node node) {
+            if(!(node instanceof WhileStmt)) return false;
+            var stmt = (WhileStmt)node;
+            return condition.test(stmt.getCondition()) && (body == null || body.test(stmt.getBody()));
+        }
+    }
+
+    /**
+     * `for (...) statement` matches a for statement or an enhanced for statement, where `for (...)` matches any body
+     */
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class ForStatement extends Statement {
+        public final Location location;
+        public final Statement body;
+
+        @Override
+        public boolean testNode(Node node) {
+            if(node instanceof ForStmt) return body == null || body.test(((ForStmt)node).getBody());
+            if(node instanceof ForEachStmt) return body == null || body.test(((ForEachStmt)node).getBody());
+            return false;
+        }
+    }
+
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class ThrowStatement extends Statement {
+        public final Location location;
+        public final Expression expression;
+
+        @Override
+        public boolean testNode(Node node) {
+            if(!(node instanceof ThrowStmt)) return false;
+            return expression.test(((ThrowStmt)node).getExpression());
+        }
+    }
+
+    /**
+     * `return expression;`, or `return;` which matches only a return statement without value
+     */
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class ReturnStatement extends Statement {
+        public final Location location;
+        public final Expression expression;
+
+        @Override
+        public boolean testNode(Node node) {
+            if(!(node instanceof ReturnStmt)) return false;
+            var value = ((ReturnStmt)node).getExpression();
+            if(expression == null) return !value.isPresent();
+            return value.isPresent() && expression.test(value.get());
+        }
+    }
+
+    /**
+     * `@Name` matches an annotation of the name regardless of its arguments
+     */
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class Annotation extends Expression {
+        public final Location location;
+        public final String name;
+
+        @Override
+        public boolean testNode(Node node) {
+            if(!(node instanceof AnnotationExpr)) return false;
+            return nameMatches(name, ((AnnotationExpr)node).getNameAsString());
+        }
+    }
+
+    /**
+     * Annotations and modifiers of a declaration, which should have all of them
+     */
+    private static boolean matchesHead(List<Annotation> annotations, List<String> modifiers, BodyDeclaration<?> declaration, NodeList<Modifier> actualModifiers) {
+        for(var annotation:annotations) {
+            var found = false;
+            for(var actual:declaration.getAnnotations()) {
+                if(annotation.test(actual)) {
+                    found = true;
+                    break;
+                }
+            }
+            if(!found) return false;
+        }
+        for(var modifier:modifiers) {
+            var found = false;
+            for(var actual:actualModifiers) {
+                if(actual.getKeyword().asString().equals(modifier)) {
+                    found = true;
+                    break;
+                }
+            }
+            if(!found) return false;
+        }
+        return true;
+    }
+
+    /**
+     * `@Annotation modifiers Type name = initializer;` matches a field declaration which declares a variable of the
+     * type and name.  `_` matches any type or name, and the variable may have any initializer unless the pattern has.
+     */
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class FieldDeclaration extends Declaration {
+        public final Location location;
+        public final List<Annotation> annotations;
+        public final List<String> modifiers;
+        public final String typeName;
+        public final String name;
+        public final Expression initializer;
+
+        @Override
+        public boolean testNode(Node node) {
+            if(!(node instanceof com.github.javaparser.ast.body.FieldDeclaration)) return false;
+            var declaration = (com.github.javaparser.ast.body.FieldDeclaration)node;
+            if(!matchesHead(annotations, modifiers, declaration, declaration.getModifiers())) return false;
+            for(var variable:declaration.getVariables()) {
+                if(!typeMatches(typeName, variable.getType())) continue;
+                if(name != null && !variable.getNameAsString().equals(name)) continue;
+                if(initializer == null) return true;
+                if(variable.getInitializer().isPresent() && initializer.test(variable.getInitializer().get())) return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * `@Annotation modifiers Type name(Type, ...) { ... }` matches a method declaration.  `_` matches any type or
+     * name, `(...)` matches any parameters, and the method may have any body unless the pattern has.
+     */
+    @AllArgsConstructor
+    @Getter
+    @ToString
+    public static class MethodDeclaration extends Declaration {
+        public final Location location;
+        public final List<Annotation> annotations;
+        public final List<String> modifiers;
+        public final String typeName;
+        public final String name;
+        /**
+         * Type names of the parameters, or null for `(...)`
+         */
+        public final List<String> parameterTypes;
+        public final Block body;
+
+        @Override
+        public boolean testNode(Node node) {
+            if(!(node instanceof com.github.javaparser.ast.body.MethodDeclaration)) return false;
+            var declaration = (com.github.javaparser.ast.body.MethodDeclaration)node;
+            if(name != null && !declaration.getNameAsString().equals(name)) return false;
+            if(!typeMatches(typeName, declaration.getType())) return false;
+            if(!matchesHead(annotations, modifiers, declaration, declaration.getModifiers())) return false;
+            if(parameterTypes != null) {
+                var parameters = declaration.getParameters();
+                if(parameters.size() != parameterTypes.size()) return false;
+                for(int i = 0; i < parameters.size(); i++) {
+                    if(!typeMatches(parameterTypes.get(i), parameters.get(i).getType())) return false;
+                }
+            }
+            if(body == null) return true;
+            return declaration.getBody().isPresent() && body.test(declaration.getBody().get());
+        }
+    }
 }
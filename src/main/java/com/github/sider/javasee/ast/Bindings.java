@@ -0,0 +1,57 @@
+package com.github.sider.javasee.ast;
+
+import com.github.javaparser.ast.Node;
+
+import java.util.Arrays;
+
+/**
+ * Nodes bound to metavariables while a pattern is tested on the current thread.
+ * Each metavariable of a pattern has a slot index assigned when the pattern is compiled, and the slots are reused
+ * for every candidate node, so that testing a pattern allocates nothing.
+ */
+final class Bindings {
+    private static final ThreadLocal<Bindings> CURRENT = ThreadLocal.withInitial(Bindings::new);
+
+    private static final Node[] NONE = new Node[0];
+
+    private Node[] slots = new Node[8];
+    private int size;
+
+    static Bindings current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Unbinds the first `size` slots for the next candidate node
+     */
+    void reset(int size) {
+        this.size = size;
+        if(slots.length < size) {
+            slots = new Node[Math.max(size, slots.length * 2)];
+        } else {
+            Arrays.fill(slots, 0, size, null);
+        }
+    }
+
+    Node get(int slot) {
+        return slots[slot];
+    }
+
+    void set(int slot, Node node) {
+        slots[slot] = node;
+    }
+
+    /**
+     * Copies the slots in use, so that a pattern trying alternatives can undo the bindings of a failed one
+     */
+    Node[] save() {
+        return size == 0 ? NONE : Arrays.copyOf(slots, size);
+    }
+
+    /**
+     * Restores the slots copied by {@link #save()}
+     */
+    void restore(Node[] saved) {
+        System.arraycopy(saved, 0, slots, 0, saved.length);
+    }
+}
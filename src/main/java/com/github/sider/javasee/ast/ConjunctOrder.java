@@ -0,0 +1,158 @@
+package com.github.sider.javasee.ast;
+
+import com.github.sider.javasee.ast.AST.PatternNode;
+
+import java.util.List;
+
+/**
+ * Order of the two checks of a composite pattern which must both pass, such as the operands of a binary expression.
+ * The check with the higher reject rate per cost runs first, where the cost is estimated from the size of the
+ * sub-pattern.
+ *
+ * The composite patterns of a rule are numbered once when the rule is made.  Their counters and learned orders are
+ * kept in {@link Counters} owned by PatternStats, and bound to the thread matching a file by {@link #use(Counters)},
+ * so the patterns never change while matching.  Without counters, the checks run in the written order.
+ */
+public final class ConjunctOrder {
+    private static final ThreadLocal<Counters> CURRENT = new ThreadLocal<>();
+
+    private ConjunctOrder() {
+    }
+
+    /**
+     * Counters of the composite patterns of the rules for a file, with the orders learned from the earlier files.
+     * Used by one thread at a time.
+     */
+    public static class Counters {
+        private final boolean[][] swapped;
+        public final long[][] tests;
+        public final long[][] rejects;
+
+        /**
+         * Index of the rule whose patterns are being tested, or -1 while no rule is tested
+         */
+        private int rule = -1;
+
+        /**
+         * @param swapped whether the second check runs first, for each composite pattern of each rule
+         */
+        public Counters(boolean[][] swapped) {
+            this.swapped = swapped;
+            this.tests = new long[swapped.length][];
+            this.rejects = new long[swapped.length][];
+            for(int i = 0; i < swapped.length; i++) {
+                tests[i] = new long[swapped[i].length * 2];
+                rejects[i] = new long[swapped[i].length * 2];
+            }
+        }
+
+        public void setRule(int rule) {
+            this.rule = rule;
+        }
+
+        boolean isSwapped(int conjunct) {
+            return swapped[rule][conjunct];
+        }
+
+        /**
+         * Records the result of the index-th check of the composite pattern
+         * @return result
+         */
+        boolean record(int conjunct, int index, boolean result) {
+            tests[rule][conjunct * 2 + index]++;
+            if(!result) rejects[rule][conjunct * 2 + index]++;
+            return result;
+        }
+    }
+
+    public static class Scope implements AutoCloseable {
+        private final Counters previous;
+
+        private Scope(Counters previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if(previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    public static Scope use(Counters counters) {
+        var scope = new Scope(CURRENT.get());
+        CURRENT.set(counters);
+        return scope;
+    }
+
+    /**
+     * Returns the counters bound to the current thread if a rule is being tested, or null
+     */
+    static Counters current() {
+        var counters = CURRENT.get();
+        return counters != null && counters.rule >= 0 ? counters : null;
+    }
+
+    /**
+     * Numbers the composite patterns in the patterns of a rule in pre-order.  Numbering the same patterns again gives
+     * the same numbers.
+     *
+     * @return number of the composite patterns
+     */
+    public static int number(List<? extends PatternNode> patterns) {
+        var count = new int[1];
+        for(var pattern:patterns) {
+            PatternTable.forEach(pattern, node -> {
+                if(node instanceof AST.BinaryExpression) {
+                    ((AST.BinaryExpression)node).conjunct = count[0]++;
+                } else if(node instanceof AST.MethodCall) {
+                    ((AST.MethodCall)node).conjunct = count[0]++;
+                }
+            });
+        }
+        return count[0];
+    }
+
+    /**
+     * Sizes of the first and second checks of each composite pattern numbered by {@link #number(List)}
+     */
+    public static int[] sizes(List<? extends PatternNode> patterns, int count) {
+        var sizes = new int[count * 2];
+        for(var pattern:patterns) {
+            PatternTable.forEach(pattern, node -> {
+                if(node instanceof AST.BinaryExpression) {
+                    var expression = (AST.BinaryExpression)node;
+                    sizes[expression.conjunct * 2] = size(expression.lhs);
+                    sizes[expression.conjunct * 2 + 1] = size(expression.rhs);
+                } else if(node instanceof AST.MethodCall) {
+                    var call = (AST.MethodCall)node;
+                    sizes[call.conjunct * 2] = size(call.receiver);
+                    sizes[call.conjunct * 2 + 1] = size(call.parameters);
+                }
+            });
+        }
+        return sizes;
+    }
+
+    /**
+     * Whether the second check rejects more per cost than the first, with a prior of one test and one pass
+     */
+    public static boolean swaps(long tests0, long rejects0, int size0, long tests1, long rejects1, int size1) {
+        return (double)rejects1 / (tests1 + 1) / size1 > (double)rejects0 / (tests0 + 1) / size0;
+    }
+
+    private static int size(Object conjunct) {
+        if(conjunct instanceof PatternNode) return PatternTable.size((PatternNode)conjunct);
+        if(conjunct instanceof List<?>) {
+            int size = 1;
+            for(var element:(List<?>)conjunct) {
+                if(element instanceof PatternNode) size += PatternTable.size((PatternNode)element);
+            }
+            return size;
+        }
+        return 1;
+    }
+}
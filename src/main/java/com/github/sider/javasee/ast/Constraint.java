@@ -0,0 +1,186 @@
+package com.github.sider.javasee.ast;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.expr.CharLiteralExpr;
+import com.github.javaparser.ast.expr.DoubleLiteralExpr;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.IntegerLiteralExpr;
+import com.github.javaparser.ast.expr.LongLiteralExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.UnaryExpr;
+import com.github.sider.javasee.Exceptions;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A constraint of `where` on the node bound to a metavariable, compiled when the rule is loaded and tested after
+ * the structural match succeeded.
+ */
+public abstract class Constraint {
+    private static final Set<String> KNOWN_KEYS = Set.of("name", "min", "max", "type");
+
+    /**
+     * Name of the metavariable without `$`
+     */
+    public final String variable;
+
+    protected Constraint(String variable) {
+        this.variable = variable;
+    }
+
+    public abstract boolean test(Node node);
+
+    /**
+     * Compiles constraints of a metavariable: a regex string of the name, or a map of `name` (regex of the name),
+     * `min` and `max` (range of the literal value), and `type` (type of the expression)
+     */
+    public static List<Constraint> compile(String variable, Object yaml) {
+        var constraints = new ArrayList<Constraint>();
+        if(yaml instanceof String) {
+            constraints.add(new Name(variable, regex(variable, (String)yaml)));
+            return constraints;
+        }
+        if(!(yaml instanceof Map<?, ?>)) {
+            throw new Exceptions.InvalidTypeException("where." + variable + " should be String or Map.  However, it's " + yaml);
+        }
+        var map = (Map<String, Object>)yaml;
+        if(!KNOWN_KEYS.containsAll(map.keySet())) {
+            throw new Exceptions.UnknownKeysException(map.keySet(), KNOWN_KEYS);
+        }
+        if(map.containsKey("name")) {
+            constraints.add(new Name(variable, regex(variable, string(variable, map, "name"))));
+        }
+        if(map.containsKey("min") || map.containsKey("max")) {
+            constraints.add(new Range(variable, number(variable, map, "min", Double.NEGATIVE_INFINITY), number(variable, map, "max", Double.POSITIVE_INFINITY)));
+        }
+        if(map.containsKey("type")) {
+            constraints.add(new Type(variable, string(variable, map, "type")));
+        }
+        return constraints;
+    }
+
+    private static Pattern regex(String variable, String regex) {
+        try {
+            return Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            throw new Exceptions.InvalidTypeException("where." + variable + " has invalid regex: " + e.getMessage());
+        }
+    }
+
+    private static String string(String variable, Map<String, Object> map, String key) {
+        var value = map.get(key);
+        if(!(value instanceof String)) {
+            throw new Exceptions.InvalidTypeException("where." + variable + "." + key + " should be String.  However, it's " + value);
+        }
+        return (String)value;
+    }
+
+    private static double number(String variable, Map<String, Object> map, String key, double defaultValue) {
+        var value = map.getOrDefault(key, defaultValue);
+        if(!(value instanceof Number)) {
+            throw new Exceptions.InvalidTypeException("where." + variable + "." + key + " should be a number.  However, it's " + value);
+        }
+        return ((Number)value).doubleValue();
+    }
+
+    /**
+     * Name of an identifier, a method call or a field access matches the regex entirely
+     */
+    @ToString
+    public static class Name extends Constraint {
+        public final Pattern regex;
+
+        public Name(String variable, Pattern regex) {
+            super(variable);
+            this.regex = regex;
+        }
+
+        @Override
+        public boolean test(Node node) {
+            String name;
+            if(node instanceof NameExpr) {
+                name = ((NameExpr)node).getNameAsString();
+            } else if(node instanceof MethodCallExpr) {
+                name = ((MethodCallExpr)node).getNameAsString();
+            } else if(node instanceof FieldAccessExpr) {
+                name = ((FieldAccessExpr)node).getNameAsString();
+            } else {
+                return false;
+            }
+            return regex.matcher(name).matches();
+        }
+    }
+
+    /**
+     * Value of an integer, long, double or character literal is between min and max (inclusive).  A literal may have
+     * signs, since `-5` is parsed as unary minus applied to `5`.
+     */
+    @ToString
+    public static class Range extends Constraint {
+        public final double min;
+        public final double max;
+
+        public Range(String variable, double min, double max) {
+            super(variable);
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public boolean test(Node node) {
+            var sign = 1;
+            while(node instanceof UnaryExpr) {
+                var unary = (UnaryExpr)node;
+                if(unary.getOperator() == UnaryExpr.Operator.MINUS) {
+                    sign = -sign;
+                } else if(unary.getOperator() != UnaryExpr.Operator.PLUS) {
+                    return false;
+                }
+                node = unary.getExpression();
+            }
+            double value;
+            try {
+                if(node instanceof IntegerLiteralExpr) {
+                    value = ((IntegerLiteralExpr)node).asInt();
+                } else if(node instanceof LongLiteralExpr) {
+                    value = ((LongLiteralExpr)node).asLong();
+                } else if(node instanceof DoubleLiteralExpr) {
+                    value = ((DoubleLiteralExpr)node).asDouble();
+                } else if(node instanceof CharLiteralExpr) {
+                    value = ((CharLiteralExpr)node).asChar();
+                } else {
+                    return false;
+                }
+            } catch (NumberFormatException e) {
+                return false;
+            }
+            value *= sign;
+            return min <= value && value <= max;
+        }
+    }
+
+    /**
+     * Type of the expression is the type or its subtype
+     */
+    @ToString
+    public static class Type extends Constraint {
+        public final String typeName;
+
+        public Type(String variable, String typeName) {
+            super(variable);
+            this.typeName = typeName;
+        }
+
+        @Override
+        public boolean test(Node node) {
+            return TypeResolver.current().hasType(node, typeName);
+        }
+    }
+}
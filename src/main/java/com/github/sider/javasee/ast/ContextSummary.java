@@ -0,0 +1,232 @@
+package com.github.sider.javasee.ast;
+
+import com.github.javaparser.ast.Node;
+import com.github.sider.javasee.NodePair;
+import com.github.sider.javasee.ast.AST.PatternNode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Context predicates (`inside`, `not-inside` and `has`) of patterns, summarized for the nodes of a file.
+ *
+ * Each distinct predicate gets a bit.  The bits of the predicates matched by the ancestors of a node are computed from
+ * the bits of its parent when the traversal enters the node, and the bits of the predicates matched by the descendants
+ * of every node are computed in one post-order pass when the summary is opened.  So a context is checked by a bit test.
+ * Contexts are checked by walking the ancestors or the descendants when no summary is open, for a node other than the
+ * one entered last, or for a file checked with more than 64 predicates of a kind.
+ *
+ * The predicates are interned once for a rule set by {@link #predicates(Collection)}, so that opening a summary for a
+ * file only matches them.
+ *
+ * <pre>
+ * var predicates = ContextSummary.predicates(patterns);
+ * try(var contexts = ContextSummary.open(predicates, root.node)) {
+ *     ... contexts.enter(pair); pattern.matches(pair) ...
+ * }
+ * </pre>
+ */
+public class ContextSummary implements AutoCloseable {
+    private static final ThreadLocal<ContextSummary> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Distinct context predicates of patterns with their bits, which never change once made
+     */
+    public static class Predicates {
+        private final List<PatternNode> insidePatterns = new ArrayList<>();
+        private final List<PatternNode> hasPatterns = new ArrayList<>();
+        private final Map<PatternNode, Integer> bits = new IdentityHashMap<>();
+
+        /**
+         * Masks of inside, not-inside and has predicates for each contextual pattern
+         */
+        private final Map<AST.Contextual, long[]> masks = new IdentityHashMap<>();
+
+        private Predicates(Collection<? extends PatternNode> patterns) {
+            var contextuals = new ArrayList<AST.Contextual>();
+            var predicates = new ArrayList<PatternNode>();
+            for(var pattern:patterns) {
+                if(!(pattern instanceof AST.Contextual)) continue;
+                var contextual = (AST.Contextual)pattern;
+                contextuals.add(contextual);
+                predicates.addAll(contextual.inside);
+                predicates.addAll(contextual.notInside);
+                predicates.addAll(contextual.has);
+            }
+            var table = contextuals.isEmpty() ? null : PatternTable.intern(predicates);
+            for(var contextual:contextuals) {
+                masks.put(contextual, new long[] {
+                        mask(table, contextual.inside, insidePatterns),
+                        mask(table, contextual.notInside, insidePatterns),
+                        mask(table, contextual.has, hasPatterns)
+                });
+            }
+        }
+
+        /**
+         * Assigns bits to the predicates, where structurally equal predicates share a bit
+         */
+        private long mask(PatternTable table, List<PatternNode> predicates, List<PatternNode> assigned) {
+            long mask = 0;
+            for(var predicate:predicates) {
+                var canonical = table.canonical(predicate);
+                var bit = bits.get(canonical);
+                if(bit == null) {
+                    bit = assigned.size();
+                    assigned.add(canonical);
+                    bits.put(canonical, bit);
+                }
+                if(bit < 64) mask |= 1L << bit;
+            }
+            return mask;
+        }
+    }
+
+    private final ContextSummary previous;
+    private final Predicates predicates;
+
+    /**
+     * Bits of the predicates matched by a node or its ancestors, for the children of the node
+     */
+    private final Map<Node, Long> inheritedBits = new IdentityHashMap<>();
+    private final Map<Node, Long> descendantBits = new IdentityHashMap<>();
+    private final boolean summarizesAncestors;
+    private final boolean summarizesDescendants;
+
+    private Node current;
+    private long currentBits;
+
+    private ContextSummary(ContextSummary previous, Predicates predicates, Node root) {
+        this.previous = previous;
+        this.predicates = predicates;
+        this.summarizesAncestors = !predicates.insidePatterns.isEmpty() && predicates.insidePatterns.size() <= 64;
+        this.summarizesDescendants = !predicates.hasPatterns.isEmpty() && predicates.hasPatterns.size() <= 64 && root != null;
+        if(summarizesDescendants) summarizeDescendants(root);
+    }
+
+    public static Predicates predicates(Collection<? extends PatternNode> patterns) {
+        return new Predicates(patterns);
+    }
+
+    public static ContextSummary open(Predicates predicates, Node root) {
+        var summary = new ContextSummary(CURRENT.get(), predicates, root);
+        CURRENT.set(summary);
+        return summary;
+    }
+
+    public static ContextSummary open(Collection<? extends PatternNode> patterns, Node root) {
+        return open(predicates(patterns), root);
+    }
+
+    private static long matchedBits(List<PatternNode> patterns, Node node) {
+        var kind = NodeKind.of(node).bit();
+        long result = 0;
+        for(int i = 0; i < patterns.size(); i++) {
+            var pattern = patterns.get(i);
+            if((pattern.kinds() & kind) != 0 && pattern.test(node)) result |= 1L << i;
+        }
+        return result;
+    }
+
+    /**
+     * Visits nodes in pre-order, and folds the bits of each node into its parent in the reverse order
+     */
+    private void summarizeDescendants(Node root) {
+        var nodes = new ArrayList<Node>();
+        var stack = new ArrayDeque<Node>();
+        stack.push(root);
+        while(!stack.isEmpty()) {
+            var node = stack.pop();
+            nodes.add(node);
+            for(var child:node.getChildNodes()) {
+                stack.push(child);
+            }
+        }
+        var matched = new IdentityHashMap<Node, Long>();
+        for(int i = nodes.size() - 1; i >= 0; i--) {
+            var node = nodes.get(i);
+            long descendants = 0;
+            for(var child:node.getChildNodes()) {
+                descendants |= descendantBits.getOrDefault(child, 0L) | matched.getOrDefault(child, 0L);
+            }
+            if(descendants != 0) descendantBits.put(node, descendants);
+            var self = matchedBits(predicates.hasPatterns, node);
+            if(self != 0) matched.put(node, self);
+        }
+    }
+
+    /**
+     * Computes the bits of the ancestors of the node, whose parent should have been entered before
+     */
+    public void enter(NodePair pair) {
+        if(!summarizesAncestors) return;
+        current = pair.node;
+        currentBits = pair.parent != null ? inheritedBits.getOrDefault(pair.parent.node, 0L) : 0L;
+        var inherited = currentBits | matchedBits(predicates.insidePatterns, pair.node);
+        if(inherited != 0 && !pair.node.getChildNodes().isEmpty()) inheritedBits.put(pair.node, inherited);
+    }
+
+    /**
+     * Tests the context of the node, by the summary of the current thread if available
+     */
+    static boolean test(AST.Contextual contextual, Node node) {
+        var summary = CURRENT.get();
+        var masks = summary != null ? summary.predicates.masks.get(contextual) : null;
+        if(masks == null) {
+            return testAncestors(contextual, node) && (contextual.has.isEmpty() || has(contextual.has, node));
+        }
+        if(summary.summarizesAncestors && node == summary.current) {
+            if(masks[0] != 0 && (summary.currentBits & masks[0]) == 0) return false;
+            if((summary.currentBits & masks[1]) != 0) return false;
+        } else if(!testAncestors(contextual, node)) {
+            return false;
+        }
+        if(summary.summarizesDescendants) {
+            return masks[2] == 0 || (summary.descendantBits.getOrDefault(node, 0L) & masks[2]) != 0;
+        }
+        return contextual.has.isEmpty() || has(contextual.has, node);
+    }
+
+    private static boolean testAncestors(AST.Contextual contextual, Node node) {
+        if(!contextual.inside.isEmpty() && !isInside(contextual.inside, node)) return false;
+        return !isInside(contextual.notInside, node);
+    }
+
+    /**
+     * Whether an ancestor of the node matches any of the patterns
+     */
+    private static boolean isInside(List<PatternNode> patterns, Node node) {
+        if(patterns.isEmpty()) return false;
+        for(var ancestor = node.getParentNode().orElse(null); ancestor != null; ancestor = ancestor.getParentNode().orElse(null)) {
+            for(var pattern:patterns) {
+                if(pattern.test(ancestor)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether a descendant of the node matches any of the patterns
+     */
+    private static boolean has(List<PatternNode> patterns, Node node) {
+        for(var child:node.getChildNodes()) {
+            for(var pattern:patterns) {
+                if(child.findFirst(Node.class, pattern::test).isPresent()) return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        if(previous != null) {
+            CURRENT.set(previous);
+        } else {
+            CURRENT.remove();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.github.sider.javasee.ast;
+
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.stmt.Statement;
+
+/**
+ * Kinds of nodes of Java source.  Each pattern declares the kinds of nodes it can match as a bit set, so that
+ * matching visits a node only with the rules which can match it.
+ */
+public enum NodeKind {
+    EXPRESSION, STATEMENT, DECLARATION, OTHER;
+
+    public static final int ALL = (1 << values().length) - 1;
+
+    public int bit() {
+        return 1 << ordinal();
+    }
+
+    public static NodeKind of(Node node) {
+        if(node instanceof Expression) return EXPRESSION;
+        if(node instanceof Statement) return STATEMENT;
+        if(node instanceof BodyDeclaration<?>) return DECLARATION;
+        return OTHER;
+    }
+}
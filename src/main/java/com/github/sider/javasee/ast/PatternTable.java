@@ -0,0 +1,171 @@
+package com.github.sider.javasee.ast;
+
+import com.github.sider.javasee.ast.AST.PatternNode;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Interns structurally equal pattern subtrees of a rule set.
+ *
+ * Each distinct subtree (ignoring locations) gets a canonical instance, which is the first one interned.  A table only
+ * reads the patterns, so any number of tables can be made of the same patterns.
+ */
+public class PatternTable {
+    private static final Map<Class<?>, List<Field>> FIELDS = new ConcurrentHashMap<>();
+
+    private static class Entry {
+        final int id;
+        final PatternNode canonical;
+
+        Entry(int id, PatternNode canonical) {
+            this.id = id;
+            this.canonical = canonical;
+        }
+    }
+
+    private final Map<List<Object>, Entry> entries = new HashMap<>();
+    private final Map<PatternNode, Entry> entryOf = new IdentityHashMap<>();
+
+    private PatternTable() {
+    }
+
+    public static PatternTable intern(Collection<? extends PatternNode> roots) {
+        var table = new PatternTable();
+        for(var root:roots) {
+            table.add(root);
+        }
+        return table;
+    }
+
+    /**
+     * @return canonical instance of the structurally equal subtrees, or null if not interned
+     */
+    public PatternNode canonical(PatternNode node) {
+        var entry = entryOf.get(node);
+        return entry != null ? entry.canonical : null;
+    }
+
+    /**
+     * Interns children first, so that the key refers to them by id
+     */
+    private Entry add(PatternNode node) {
+        var entry = entryOf.get(node);
+        if(entry != null) return entry;
+
+        var key = new ArrayList<Object>();
+        key.add(node.getClass());
+        for(var field:fields(node.getClass())) {
+            var value = get(field, node);
+            if(value instanceof PatternNode) {
+                value = add((PatternNode)value).id;
+            } else if(value instanceof List<?>) {
+                var ids = new ArrayList<Object>();
+                for(var element:(List<?>)value) {
+                    ids.add(element instanceof PatternNode ? add((PatternNode)element).id : element);
+                }
+                value = ids;
+            }
+            key.add(value);
+        }
+
+        entry = entries.get(key);
+        if(entry == null) {
+            entry = new Entry(entries.size(), node);
+            entries.put(key, entry);
+        }
+        entryOf.put(node, entry);
+        return entry;
+    }
+
+    /**
+     * Names of the metavariables in the subtree
+     */
+    public static Set<String> metavariables(PatternNode node) {
+        return metavariableNodes(node).stream().map(metavariable -> metavariable.name).collect(Collectors.toSet());
+    }
+
+    /**
+     * Metavariables in the subtree, in the order of evaluation of a structural match
+     */
+    static List<AST.Metavariable> metavariableNodes(PatternNode node) {
+        var metavariables = new ArrayList<AST.Metavariable>();
+        collectMetavariables(node, metavariables);
+        return metavariables;
+    }
+
+    private static void collectMetavariables(PatternNode node, List<AST.Metavariable> metavariables) {
+        forEach(node, n -> {
+            if(n instanceof AST.Metavariable) metavariables.add((AST.Metavariable)n);
+        });
+    }
+
+    /**
+     * Visits the nodes of the subtree in pre-order
+     */
+    static void forEach(PatternNode node, Consumer<PatternNode> block) {
+        block.accept(node);
+        for(var field:fields(node.getClass())) {
+            var value = get(field, node);
+            if(value instanceof PatternNode) {
+                forEach((PatternNode)value, block);
+            } else if(value instanceof List<?>) {
+                for(var element:(List<?>)value) {
+                    if(element instanceof PatternNode) forEach((PatternNode)element, block);
+                }
+            }
+        }
+    }
+
+    /**
+     * Number of pattern nodes in the subtree
+     */
+    public static int size(PatternNode node) {
+        int size = 1;
+        for(var field:fields(node.getClass())) {
+            var value = get(field, node);
+            if(value instanceof PatternNode) {
+                size += size((PatternNode)value);
+            } else if(value instanceof List<?>) {
+                for(var element:(List<?>)value) {
+                    if(element instanceof PatternNode) size += size((PatternNode)element);
+                }
+            }
+        }
+        return size;
+    }
+
+    private static Object get(Field field, PatternNode node) {
+        try {
+            return field.get(node);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Public instance fields declared by subclasses of PatternNode, except locations
+     */
+    private static List<Field> fields(Class<?> klass) {
+        return FIELDS.computeIfAbsent(klass, k -> {
+            var result = new ArrayList<Field>();
+            for(var c = k; c != PatternNode.class && c != null; c = c.getSuperclass()) {
+                for(var field:c.getDeclaredFields()) {
+                    var modifiers = field.getModifiers();
+                    if(Modifier.isStatic(modifiers) || !Modifier.isPublic(modifiers) || field.getType() == Location.class) continue;
+                    result.add(field);
+                }
+            }
+            return result;
+        });
+    }
+}
@@ -0,0 +1,80 @@
+package com.github.sider.javasee.ast;
+
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.comments.Comment;
+import com.github.javaparser.metamodel.PropertyMetaModel;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 64-bit structural hash of a subtree of Java source, computed at most once for each node and kept in the node.
+ * The hash covers the kinds, attributes (names, operators, literal values, ...) and children of the nodes, but not
+ * comments and positions, so the same expression written at different places has the same hash.  Different
+ * expressions may collide, so equal hashes only tell that {@link #same(Node, Node)} is worth calling.
+ *
+ * The hash is kept with {@link Node#setData} on the nodes of the caller's tree without synchronization, so a tree must
+ * be matched by one thread at a time, as RuleSet does for each file.
+ */
+final class SubtreeHash {
+    private static final DataKey<Long> HASH = new DataKey<>() {};
+    private static final Map<Class<?>, List<PropertyMetaModel>> ATTRIBUTES = new ConcurrentHashMap<>();
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private SubtreeHash() {
+    }
+
+    static long of(Node node) {
+        if(node.containsData(HASH)) return node.getData(HASH);
+        var hash = mix(FNV_OFFSET, node.getClass().getName());
+        for(var attribute:attributes(node)) {
+            hash = mix(hash, String.valueOf(attribute.getValue(node)));
+        }
+        for(var child:node.getChildNodes()) {
+            if(child instanceof Comment) continue;
+            hash = (hash ^ of(child)) * FNV_PRIME;
+        }
+        node.setData(HASH, hash);
+        return hash;
+    }
+
+    /**
+     * Tests whether two subtrees are the same expression, comparing what the hash covers
+     */
+    static boolean same(Node a, Node b) {
+        if(a == b) return true;
+        if(a.getClass() != b.getClass()) return false;
+        for(var attribute:attributes(a)) {
+            if(!Objects.equals(attribute.getValue(a), attribute.getValue(b))) return false;
+        }
+        var as = a.getChildNodes();
+        var bs = b.getChildNodes();
+        int i = 0, j = 0;
+        while(true) {
+            while(i < as.size() && as.get(i) instanceof Comment) i++;
+            while(j < bs.size() && bs.get(j) instanceof Comment) j++;
+            if(i == as.size() || j == bs.size()) return i == as.size() && j == bs.size();
+            if(!same(as.get(i++), bs.get(j++))) return false;
+        }
+    }
+
+    private static long mix(long hash, String value) {
+        for(int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+        // separates adjacent values
+        return (hash ^ 0xff) * FNV_PRIME;
+    }
+
+    private static List<PropertyMetaModel> attributes(Node node) {
+        return ATTRIBUTES.computeIfAbsent(node.getClass(), k -> node.getMetaModel().getAllPropertyMetaModels().stream()
+                .filter(PropertyMetaModel::isAttribute)
+                .collect(Collectors.toList()));
+    }
+}
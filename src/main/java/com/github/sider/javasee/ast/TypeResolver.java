@@ -0,0 +1,287 @@
+package com.github.sider.javasee.ast;
+
+import com.github.javaparser.ast.DataKey;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.types.ResolvedType;
+import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade;
+import com.github.javaparser.symbolsolver.model.resolution.SymbolReference;
+import com.github.javaparser.symbolsolver.model.resolution.TypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JarTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.JavaParserTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Resolves types of expressions for typed patterns, with the JDK, source roots and classpath jars.
+ *
+ * Solvers are created on the first typed pattern tested, so rules without typed patterns don't pay for them.
+ * Each resolver owns its solvers and one facade of them, which holds no nodes since javaparser caches resolved types in
+ * the nodes.  javaparser 3.13 keeps facades in a static WeakHashMap without synchronization, and looks up the facade of
+ * a solver while resolving.  So a resolver registers the facades of all of its solvers when it creates them, under
+ * the write lock of FACADES_LOCK, and resolution only reads the map under the read lock, so that any number of threads
+ * resolve types at once.  The map never releases the facades, whose values refer to their keys, so {@link #close()}
+ * clears it and registers the facades of the resolvers still open.
+ * The type of a node is resolved at most once and kept in the node.
+ */
+public class TypeResolver implements AutoCloseable {
+    public static final TypeResolver DEFAULT = new TypeResolver(List.of(), List.of());
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private static final DataKey<Resolved> RESOLVED = new DataKey<>() {};
+
+    public final List<Path> sourceRoots;
+    public final List<Path> classpath;
+
+    /**
+     * Guards the static map of facades of javaparser: written while registering or clearing facades, and read while
+     * resolving
+     */
+    private static final ReadWriteLock FACADES_LOCK = new ReentrantReadWriteLock();
+
+    /**
+     * Resolvers whose facades are registered, guarded by FACADES_LOCK
+     */
+    private static final Set<TypeResolver> OPEN = new HashSet<>();
+
+    /**
+     * Solvers owned by this resolver, the first of which is the root, and their facade, or null unless open.
+     * Guarded by FACADES_LOCK.
+     */
+    private List<TypeSolver> solvers;
+    private JavaParserFacade facade;
+    private final Map<String, Set<String>> ancestorNames = new ConcurrentHashMap<>();
+
+    public TypeResolver(List<Path> sourceRoots, List<Path> classpath) {
+        this.sourceRoots = sourceRoots;
+        this.classpath = classpath;
+    }
+
+    /**
+     * Type names of a node resolved by a resolver
+     */
+    private static class Resolved {
+        final TypeResolver resolver;
+        final Set<String> names;
+
+        Resolved(TypeResolver resolver, Set<String> names) {
+            this.resolver = resolver;
+            this.names = names;
+        }
+    }
+
+    /**
+     * Uses the resolver for typed patterns tested on the current thread until closed, typically for a file
+     */
+    public static class Scope implements AutoCloseable {
+        private final TypeResolver resolver;
+        private final Scope previous;
+
+        private Scope(TypeResolver resolver, Scope previous) {
+            this.resolver = resolver;
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            if(previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    public static Scope use(TypeResolver resolver) {
+        var scope = new Scope(resolver, CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    static TypeResolver current() {
+        var scope = CURRENT.get();
+        return scope != null ? scope.resolver : DEFAULT;
+    }
+
+    /**
+     * @param typeName simple or qualified name of a type, followed by [] for arrays
+     * @return whether the type of the expression node is the type or its subtype
+     */
+    boolean hasType(Node node, String typeName) {
+        var names = typeNames(node);
+        if(names.contains(typeName)) return true;
+        if(typeName.indexOf('.') >= 0) return false;
+        var suffix = "." + typeName;
+        for(var name:names) {
+            if(name.endsWith(suffix)) return true;
+        }
+        return false;
+    }
+
+    private Set<String> typeNames(Node node) {
+        if(node.containsData(RESOLVED)) {
+            var resolved = node.getData(RESOLVED);
+            if(resolved.resolver == this) return resolved.names;
+        }
+        Set<String> names;
+        try {
+            names = node instanceof Expression ? resolve(node) : Set.of();
+        } catch (RuntimeException | StackOverflowError e) {
+            // unresolvable types never match
+            names = Set.of();
+        }
+        node.setData(RESOLVED, new Resolved(this, names));
+        return names;
+    }
+
+    private Set<String> typeNames(ResolvedType type) {
+        if(!type.isReferenceType()) return Set.of(type.describe());
+        var referenceType = type.asReferenceType();
+        return ancestorNames.computeIfAbsent(referenceType.getQualifiedName(), name -> {
+            var names = new HashSet<String>();
+            names.add(name);
+            try {
+                for(var ancestor:referenceType.getAllAncestors()) {
+                    names.add(ancestor.getQualifiedName());
+                }
+            } catch (RuntimeException e) {
+                // unresolvable ancestors
+            }
+            return Set.copyOf(names);
+        });
+    }
+
+    private Set<String> resolve(Node node) {
+        while(true) {
+            FACADES_LOCK.readLock().lock();
+            try {
+                if(facade != null) return typeNames(facade.getType(node));
+            } finally {
+                FACADES_LOCK.readLock().unlock();
+            }
+            open();
+        }
+    }
+
+    /**
+     * Creates the solvers and registers their facades, unless another thread did
+     */
+    private void open() {
+        FACADES_LOCK.writeLock().lock();
+        try {
+            if(facade == null) {
+                solvers = solvers();
+                register(solvers);
+                OPEN.add(this);
+                facade = JavaParserFacade.get(solvers.get(0));
+            }
+        } finally {
+            FACADES_LOCK.writeLock().unlock();
+        }
+    }
+
+    private List<TypeSolver> solvers() {
+        var solvers = new ArrayList<TypeSolver>();
+        var reflection = new ReflectionTypeSolver();
+        var solver = new CombinedTypeSolver(reflection);
+        solvers.add(reflection);
+        solvers.add(solver);
+        for(var jar:classpath) {
+            try {
+                var jarSolver = new JarTypeSolver(jar);
+                solver.add(jarSolver);
+                solvers.add(jarSolver);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to read classpath: " + jar, e);
+            }
+        }
+        var caching = new CachingTypeSolver(solver);
+        var combined = new CombinedTypeSolver(caching);
+        solvers.add(caching);
+        for(var root:sourceRoots) {
+            var sourceSolver = new JavaParserTypeSolver(root);
+            combined.add(sourceSolver);
+            solvers.add(sourceSolver);
+        }
+        solvers.add(0, combined);
+        return solvers;
+    }
+
+    /**
+     * Registers the facades of the solvers, which javaparser may look up by any of them or their roots.
+     * Called with the write lock of FACADES_LOCK held.
+     */
+    private static void register(List<TypeSolver> solvers) {
+        for(var solver:solvers) {
+            JavaParserFacade.get(solver);
+            JavaParserFacade.get(solver.getRoot());
+        }
+    }
+
+    /**
+     * Releases the solvers and the facades of this resolver.  The resolver can still be used, and creates them again.
+     * {@link #DEFAULT} is shared, and keeps its solvers.
+     */
+    @Override
+    public void close() {
+        if(this == DEFAULT) return;
+        FACADES_LOCK.writeLock().lock();
+        try {
+            if(!OPEN.remove(this)) return;
+            facade = null;
+            solvers = null;
+            JavaParserFacade.clearInstances();
+            for(var resolver:OPEN) {
+                register(resolver.solvers);
+            }
+        } finally {
+            FACADES_LOCK.writeLock().unlock();
+        }
+    }
+
+    /**
+     * JDK and jar solvers with a cache of resolved declarations.
+     * The parent is never set, so that the declarations are resolved only by the wrapped solver.
+     */
+    private static class CachingTypeSolver implements TypeSolver {
+        private final TypeSolver solver;
+        private final Map<String, SymbolReference<ResolvedReferenceTypeDeclaration>> declarations = new ConcurrentHashMap<>();
+
+        CachingTypeSolver(TypeSolver solver) {
+            this.solver = solver;
+        }
+
+        @Override
+        public TypeSolver getParent() {
+            return null;
+        }
+
+        @Override
+        public void setParent(TypeSolver parent) {
+        }
+
+        @Override
+        public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+            var declaration = declarations.get(name);
+            if(declaration == null) {
+                declaration = solver.tryToSolveType(name);
+                declarations.putIfAbsent(name, declaration);
+            }
+            return declaration;
+        }
+    }
+}
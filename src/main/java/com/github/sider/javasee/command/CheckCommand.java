@@ -1,17 +1,39 @@
 package com.github.sider.javasee.command;
 
+import com.github.javaparser.JavaParser;
 import com.github.sider.javasee.*;
+import com.github.sider.javasee.ast.TypeResolver;
+import com.github.sider.javasee.lib.Libs;
+import com.github.sider.javasee.lib.Tuple3;
+import jdk.jfr.Recording;
 import org.kohsuke.args4j.Argument;
 import org.kohsuke.args4j.Option;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.error.YAMLException;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 
 public class CheckCommand implements CLICommand {
     @Option(name = "-config", aliases = "--config", metaVar = "<config>", usage = "config YAML file", help = true)
@@ -23,9 +45,47 @@ public class CheckCommand implements CLICommand {
     @Option(name = "-format", aliases = "--format", metaVar = "<format>", usage = "output format", help = true)
     public String optionFormat = "text";
 
+    @Option(name = "-shard", aliases = "--shard", metaVar = "<I/N>", usage = "check only I-th of N partitions of the files", help = true)
+    public String optionShard;
+
+    @Option(name = "-files-from", aliases = "--files-from", metaVar = "<file>", usage = "read paths to check from file (- for stdin)", help = true)
+    public String optionFilesFrom;
+
+    @Option(name = "-stdin", aliases = "--stdin", usage = "check source read from stdin")
+    public boolean optionStdin;
+
+    @Option(name = "-stdin-filename", aliases = "--stdin-filename", metaVar = "<name>", usage = "file name of source read from stdin", help = true)
+    public String optionStdinFilename = "stdin.java";
+
+    @Option(name = "-stdin-batch", aliases = "--stdin-batch", usage = "check length-prefixed (name, source) records read from stdin")
+    public boolean optionStdinBatch;
+
+    @Option(name = "-jfr", aliases = "--jfr", metaVar = "<file>", usage = "write Java Flight Recorder events to file", help = true)
+    public String optionJfr;
+
+    @Option(name = "-progress", aliases = "--progress", usage = "report progress to stderr")
+    public boolean optionProgress;
+
+    @Option(name = "-file-timeout", aliases = "--file-timeout", metaVar = "<seconds>", usage = "give up checking a file after the seconds", help = true)
+    public String optionFileTimeout;
+
+    @Option(name = "-pattern-stats", aliases = "--pattern-stats", metaVar = "<file>", usage = "load and save statistics deciding the order of patterns", help = true)
+    public String optionPatternStats;
+
+    @Option(name = "-baseline", aliases = "--baseline", metaVar = "<file>", usage = "report only findings not recorded in the baseline file", help = true)
+    public String optionBaseline;
+
+    @Option(name = "-write-baseline", aliases = "--write-baseline", usage = "record the findings to the -baseline file instead of reporting them")
+    public boolean optionWriteBaseline;
+
+    @Option(name = "-fix", aliases = "--fix", usage = "rewrite the code of the issues with the fix of the rules")
+    public boolean optionFix;
+
     @Argument
     public List<String> paths = new ArrayList();
 
+    public InputStream stdin = System.in;
+
     @Override
     public String getName() {
         return "check";
@@ -44,9 +104,30 @@ public class CheckCommand implements CLICommand {
             default:
                 throw new Exceptions.UnknownFormatException(optionFormat);
         }
+        var shard = Optional.ofNullable(optionShard).map(Shard::parse);
+        if(optionWriteBaseline && optionBaseline == null) {
+            throw new Exceptions.InvalidOptionException("-write-baseline requires -baseline <file>");
+        }
+        if(optionWriteBaseline && optionFix) {
+            throw new Exceptions.InvalidOptionException("-fix cannot be used with -write-baseline");
+        }
+        // each of them reads the whole standard input
+        var stdinReaders = new ArrayList<String>();
+        if(optionStdin) stdinReaders.add("-stdin");
+        if(optionStdinBatch) stdinReaders.add("-stdin-batch");
+        if("-".equals(optionFilesFrom)) stdinReaders.add("-files-from -");
+        if(stdinReaders.size() > 1) {
+            throw new Exceptions.InvalidOptionException(String.join(" and ", stdinReaders) + " cannot be used together");
+        }
+        var watchdog = Optional.ofNullable(optionFileTimeout).map(CheckCommand::parseTimeout).map(FileWatchdog::new);
         formatter.onStart();
 
+        Recording recording = null;
+        var progress = optionProgress ? Progress.start(err) : null;
         try {
+            if(optionJfr != null) {
+                recording = Events.startRecording(Paths.get(optionJfr));
+            }
             if(!configPath().isFile()) {
                 err.println("Configuration file " + configPath() + " does not look a file.");
                 err.println("Specify configuration file by -config option.");
@@ -56,12 +137,17 @@ public class CheckCommand implements CLICommand {
             Map<String, Object> yaml;
             Config config = null;
             try {
+                var event = new Events.ConfigLoad();
+                event.begin();
                 yaml = new Yaml().load(new FileInputStream(configPath()));
                 if(yaml == null) {
                     System.out.println("YAML file has unknown error");
                     return JavaSee.ExitStatus.CONFIG_FILE_UNKNOWN_ERROR;
                 }
                 config = Config.load(yaml, configPath(), rootPath);
+                event.path = configPath().getPath();
+                event.ruleCount = config.rules.size();
+                event.commit();
             } catch (Exceptions.YamlValidationException e) {
                 System.out.println("YAML file has schema error: " + e.getMessage());
                 return JavaSee.ExitStatus.CONFIG_FILE_SCHEMA_ERROR;
@@ -73,23 +159,168 @@ public class CheckCommand implements CLICommand {
                 return JavaSee.ExitStatus.CONFIG_FILE_SYNTAX_ERROR;
             }
 
-            var analyzer = new Analyzer(config, optionRoot, new ArrayList<>());
+            var analyzer = new Analyzer(config, optionRoot, new ArrayList<>(), optionPatternStats != null);
+            var disabledRules = new ConcurrentLinkedQueue<Runnable>();
+            Runnable reportDisabledRules = () -> {
+                Runnable event;
+                while((event = disabledRules.poll()) != null) event.run();
+            };
+            if(analyzer.getRuleCost() != null) {
+                // a worker abandoned by the watchdog can disable a rule, so the events are passed to the formatter by
+                // this thread between files
+                analyzer.getRuleCost().setListener((rule, reason) -> disabledRules.add(() -> formatter.onRuleDisabled(rule, reason)));
+            }
+            if(optionPatternStats != null && Files.exists(Paths.get(optionPatternStats))) {
+                analyzer.getPatternStats().load(Paths.get(optionPatternStats));
+            }
+            var baseline = optionBaseline != null && !optionWriteBaseline ?
+                    Baseline.load(Paths.get(optionBaseline)) : null;
+            var fingerprints = LongStream.builder();
+            // Files are written in parallel while the next files are checked
+            var fixPool = optionFix ? new ForkJoinPool() : null;
+            var fixes = optionFix ? new LinkedHashMap<File, Future<Integer>>() : null;
             var result = new Object() {
                 JavaSee.ExitStatus value = JavaSee.ExitStatus.OK;
+                int count = 0;
             };
 
-            new JavaFileEnumerator(paths.isEmpty() ? List.of(new File(".")) : paths.stream().map(p -> new File(p)).collect(Collectors.toList()),  config).forEach((path , script) -> {
-                analyzer.javaFiles.add(script);
+            // Files of the other shards are filtered before they are counted as enumerated
+            Predicate<File> inShard = path -> shard.isEmpty() || shard.get().contains(rootPath, path);
+            // Each file is checked as soon as it is enumerated, so that paths streamed by --files-from are
+            // checked while the list is still being written
+            BiConsumer<File, JavaFile> check = (path, script) -> {
+                reportDisabledRules.run();
+                result.count++;
                 formatter.onScriptLoaded(script);
-            });
+                Callable<List<Tuple3<JavaFile, Rule, NodePair>>> analyze = () -> {
+                    var issues = new ArrayList<Tuple3<JavaFile, Rule, NodePair>>();
+                    var start = System.nanoTime();
+                    var root = script.rootPair();
+                    var parsed = System.nanoTime();
+                    if(progress != null) progress.onParsed(root.node.getRange().map(range -> range.end.line).orElse(0), parsed - start);
+                    analyzer.run(script, root, issues::add);
+                    if(progress != null) progress.onMatched(System.nanoTime() - parsed);
+                    return issues;
+                };
+                List<Tuple3<JavaFile, Rule, NodePair>> issues;
+                if(watchdog.isPresent()) {
+                    try {
+                        issues = watchdog.get().run(script, analyze);
+                    } catch (Exceptions.FileTimeoutException e) {
+                        formatter.onScriptError(path.getPath(), e);
+                        return;
+                    }
+                } else {
+                    issues = Libs.wrapException(analyze::call);
+                }
+                var fingerprinter = optionBaseline != null ?
+                        new Baseline.Fingerprinter(Shard.relativePath(rootPath, path)) : null;
+                var reported = new ArrayList<Tuple3<JavaFile, Rule, NodePair>>();
+                var edits = new IdentityHashMap<Tuple3<JavaFile, Rule, NodePair>, Fixes.Edit>();
+                // The patterns are tested again to bind the metavariables of the fixes, which may need the types
+                try(var scope = TypeResolver.use(analyzer.config.typeResolver)) {
+                    for(var t:issues) {
+                        if(fingerprinter != null) {
+                            var fingerprint = fingerprinter.fingerprint(script, t._2, t._3.node);
+                            if(optionWriteBaseline) {
+                                fingerprints.add(fingerprint);
+                                continue;
+                            }
+                            if(baseline.contains(fingerprint)) continue;
+                        }
+                        reported.add(t);
+                        if(fixes != null && script.readFromPath) {
+                            Fixes.edit(script, t._2, t._3).ifPresent(edit -> edits.put(t, edit));
+                        }
+                    }
+                }
+                if(!edits.isEmpty()) {
+                    var resolved = Fixes.resolve(new ArrayList<>(edits.values()));
+                    var applied = Collections.newSetFromMap(new IdentityHashMap<Fixes.Edit, Boolean>());
+                    applied.addAll(resolved);
+                    // issues whose edits overlap with others are reported
+                    reported.removeIf(t -> applied.contains(edits.get(t)));
+                    var source = script.getSource();
+                    fixes.put(path, fixPool.submit(() -> {
+                        Fixes.write(path.toPath(), Fixes.apply(source, resolved));
+                        return resolved.size();
+                    }));
+                }
+                for(var t:reported) {
+                    var rule = t._2;
+                    var pair = t._3;
+                    var event = new Events.IssueEmission();
+                    event.begin();
+                    formatter.onIssueFound(script, rule, pair);
+                    event.path = path.getPath();
+                    event.ruleId = rule.id;
+                    event.line = pair.node.getRange().map(range -> range.begin.line).orElse(0);
+                    event.commit();
+                    if(progress != null) progress.onIssueFound();
+                    result.value = JavaSee.ExitStatus.FAILURE;
+                }
+            };
+            // One enumerator for the whole run, so that a file given twice, by overlapping paths or by duplicate
+            // lines of --files-from, is checked and fixed once
+            var enumerator = new JavaFileEnumerator(List.of(), analyzer.config);
+            enumerator.setFilter(inShard);
+            if(progress != null) enumerator.setEnumerationListener(progress::onEnumerated);
+            Consumer<List<File>> enumerate = (files) -> enumerator.enumerate(files, check);
+            var typeResolver = analyzer.config.typeResolver;
 
-            analyzer.run((t) -> {
-                var script = t._1;
-                var rule = t._2;
-                var pair = t._3;
-                formatter.onIssueFound(script, rule, pair);
-                result.value = JavaSee.ExitStatus.FAILURE;
-            });
+            try(enumerator; typeResolver) {
+                if(!paths.isEmpty() || (optionFilesFrom == null && !optionStdin && !optionStdinBatch)) {
+                    enumerate.accept(paths.isEmpty() ? List.of(new File(".")) : paths.stream().map(p -> new File(p)).collect(Collectors.toList()));
+                }
+                if(optionFilesFrom != null) {
+                    var fromStdin = optionFilesFrom.equals("-");
+                    var reader = new InputStreamReader(fromStdin ? stdin : new FileInputStream(optionFilesFrom), StandardCharsets.UTF_8);
+                    try {
+                        PathList.read(reader, (path) -> enumerate.accept(List.of(new File(path))));
+                    } finally {
+                        if(!fromStdin) reader.close();
+                    }
+                }
+                if(optionStdin) {
+                    var path = new File(optionStdinFilename);
+                    var source = SourceReader.decode(ByteBuffer.wrap(stdin.readAllBytes()));
+                    if(inShard.test(path)) {
+                        if(progress != null) progress.onEnumerated(1, Duration.ZERO);
+                        check.accept(path, new JavaFile(path, () -> new JavaParser(), source));
+                    }
+                }
+                if(optionStdinBatch) {
+                    SourceRecords.read(new BufferedInputStream(stdin), (name, source) -> {
+                        var path = new File(name);
+                        if(!inShard.test(path)) return;
+                        if(progress != null) progress.onEnumerated(1, Duration.ZERO);
+                        check.accept(path, new JavaFile(path, () -> new JavaParser(), source));
+                    });
+                }
+            }
+            reportDisabledRules.run();
+            formatter.onScriptsEnumerated(result.count, enumerator.getWalkTime());
+            if(optionPatternStats != null) {
+                analyzer.getPatternStats().save(Paths.get(optionPatternStats));
+            }
+            if(fixes != null) {
+                int fixed = 0;
+                for(var entry:fixes.entrySet()) {
+                    try {
+                        fixed += entry.getValue().get();
+                    } catch (ExecutionException e) {
+                        formatter.onScriptError(entry.getKey().getPath(), e.getCause() instanceof Exception ? (Exception)e.getCause() : e);
+                        result.value = JavaSee.ExitStatus.FAILURE;
+                    }
+                }
+                fixPool.shutdown();
+                err.println("Fixed " + fixed + " issues in " + fixes.size() + " files");
+            }
+            if(optionWriteBaseline) {
+                var values = fingerprints.build().toArray();
+                Baseline.write(Paths.get(optionBaseline), values);
+                err.println("Baseline written to " + optionBaseline + ": " + values.length + " findings");
+            }
 
             return result.value;
         } catch (Exception e) {
@@ -97,6 +328,23 @@ public class CheckCommand implements CLICommand {
             return JavaSee.ExitStatus.ERROR;
         } finally {
             formatter.onFinish();
+            watchdog.ifPresent(FileWatchdog::close);
+            if(progress != null) progress.close();
+            if(recording != null) {
+                // writes the recording to the destination
+                recording.stop();
+                recording.close();
+            }
+        }
+    }
+
+    private static Duration parseTimeout(String seconds) {
+        try {
+            var timeout = Duration.ofNanos((long)(Double.parseDouble(seconds) * 1e9));
+            if(timeout.isNegative() || timeout.isZero()) throw new NumberFormatException();
+            return timeout;
+        } catch (NumberFormatException e) {
+            throw new Exceptions.InvalidOptionException("Invalid file timeout: " + seconds + ", expected positive seconds");
         }
     }
 
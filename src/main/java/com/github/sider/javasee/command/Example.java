@@ -0,0 +1,99 @@
+package com.github.sider.javasee.command;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParseStart;
+import com.github.javaparser.Problem;
+import com.github.javaparser.ast.Node;
+import com.github.sider.javasee.NodePair;
+import com.github.sider.javasee.ast.AST;
+import com.github.sider.javasee.ast.ContextSummary;
+
+import java.util.ArrayDeque;
+import java.util.List;
+
+import static com.github.javaparser.Providers.provider;
+
+/**
+ * A match or unmatch example of a rule, parsed once to test all the patterns of the rule.
+ * An example is the first of an expression, a statement, statements, or a compilation unit which it parses as.
+ * Parse failures are returned as results rather than thrown, and the forms which the example obviously isn't are
+ * not tried.
+ */
+class Example {
+    enum Form {
+        EXPRESSION, STATEMENT, STATEMENTS, COMPILATION_UNIT
+    }
+
+    /**
+     * Parsers are reused by each thread, since rules are tested in parallel
+     */
+    private static final ThreadLocal<JavaParser> parsers = ThreadLocal.withInitial(JavaParser::new);
+
+    public final String source;
+    public final Form form;
+
+    /**
+     * Root of the parsed example, or null if it doesn't parse as any form
+     */
+    public final Node node;
+
+    /**
+     * Problems of parsing the example as a compilation unit, if it doesn't parse
+     */
+    public final List<Problem> problems;
+
+    private Example(String source, Form form, Node node, List<Problem> problems) {
+        this.source = source;
+        this.form = form;
+        this.node = node;
+        this.problems = problems;
+    }
+
+    static Example parse(String source) {
+        var parser = parsers.get();
+        var text = source.strip();
+        var declaration = text.startsWith("package ") || text.startsWith("import ");
+        if(!declaration && !text.endsWith(";")) {
+            var result = parser.parse(ParseStart.EXPRESSION, provider(source));
+            if(result.isSuccessful()) return parsed(source, Form.EXPRESSION, result);
+        }
+        if(!declaration) {
+            var result = parser.parse(ParseStart.STATEMENT, provider(source));
+            if(result.isSuccessful()) return parsed(source, Form.STATEMENT, result);
+            var block = parser.parse(ParseStart.BLOCK, provider("{" + source + "}"));
+            if(block.isSuccessful()) return parsed(source, Form.STATEMENTS, block);
+        }
+        var result = parser.parse(ParseStart.COMPILATION_UNIT, provider(source));
+        if(result.isSuccessful()) return parsed(source, Form.COMPILATION_UNIT, result);
+        return new Example(source, null, null, result.getProblems());
+    }
+
+    private static Example parsed(String source, Form form, ParseResult<? extends Node> result) {
+        return new Example(source, form, result.getResult().get(), List.of());
+    }
+
+    public boolean isParsed() {
+        return node != null;
+    }
+
+    /**
+     * Whether any of the patterns matches the example or a node in it.  The example is walked as RuleSet walks a file,
+     * with the context summary of the patterns, and types are resolved by the resolver in use.
+     */
+    public boolean matches(List<AST.PatternNode> patterns) {
+        try(var contexts = ContextSummary.open(patterns, node)) {
+            var stack = new ArrayDeque<NodePair>();
+            stack.push(new NodePair(node, null));
+            while(!stack.isEmpty()) {
+                var pair = stack.pop();
+                contexts.enter(pair);
+                for(var pattern:patterns) {
+                    if(pattern.matches(pair)) return true;
+                }
+                pair.children().forEach(stack::push);
+            }
+            return false;
+        }
+    }
+}
@@ -5,7 +5,6 @@ import com.github.sider.javasee.JavaFileEnumerator;
 import com.github.sider.javasee.JavaSee;
 import com.github.sider.javasee.StacktraceFormatting;
 import com.github.sider.javasee.ast.AST;
-import com.github.sider.javasee.lib.Libs;
 import com.github.sider.javasee.parser.JavaSeeParser;
 import com.github.sider.javasee.parser.ParseException;
 import lombok.ToString;
@@ -14,7 +13,6 @@ import org.kohsuke.args4j.Argument;
 import java.io.File;
 import java.io.PrintStream;
 import java.io.StringReader;
-import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -30,7 +28,7 @@ public class FindCommand implements CLICommand, StacktraceFormatting {
     @Argument(index = 1, metaVar = "<path>", usage = "paths")
     public List<String> optionPaths = new ArrayList<>();
 
-    public AST.Expression pattern;
+    public AST.PatternNode pattern;
     public List<File> paths;
 
     private Analyzer analyzer;
@@ -43,7 +41,7 @@ public class FindCommand implements CLICommand, StacktraceFormatting {
     @Override
     public JavaSee.ExitStatus start(PrintStream out, PrintStream err) {
         try {
-            this.pattern = new JavaSeeParser(new StringReader(optionPattern)).WholeExpression();
+            this.pattern = AST.Constrained.of(new JavaSeeParser(new StringReader(optionPattern)).WholePattern(), List.of());
         } catch (ParseException e) {
             throw new RuntimeException(e);
         }
@@ -57,7 +55,7 @@ public class FindCommand implements CLICommand, StacktraceFormatting {
             var lineNumber = range.begin.line;
             var startColumn = range.begin.column;
             var endColumn = range.end.column;
-            var src = getLine(path, lineNumber);
+            var src = script.getLine(lineNumber);
             src = blue(src.substring(0, startColumn - 1)) + brightBlue(src.substring(startColumn - 1, endColumn)) + blue(src.substring(endColumn, src.length()));
 
             out.println("  " + path+ ":" + lineNumber + ":" + startColumn + "\t" + src);
@@ -66,14 +64,6 @@ public class FindCommand implements CLICommand, StacktraceFormatting {
         return JavaSee.ExitStatus.OK;
     }
 
-    /**
-     * Note that line is 1-origin
-     */
-    private String getLine(File path, int line) {
-        var lines = Libs.wrapException(() -> Files.readAllLines(path.toPath()));
-        return lines.get(line - 1);
-    }
-
     private Analyzer getAnalyzer() {
         if(analyzer != null) return analyzer;
         this.analyzer = new Analyzer(null, null, new ArrayList<>());
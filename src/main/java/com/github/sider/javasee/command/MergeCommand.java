@@ -0,0 +1,114 @@
+package com.github.sider.javasee.command;
+
+import com.github.sider.javasee.Formatters;
+import com.github.sider.javasee.JavaSee;
+import org.kohsuke.args4j.Argument;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.error.YAMLException;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Merges JSON outputs of `check -format json`, typically produced by `check -shard I/N` on several machines,
+ * into a single report.
+ */
+public class MergeCommand implements CLICommand {
+    @Argument(required = true, metaVar = "<json>", usage = "JSON outputs of check command")
+    public List<String> paths = new ArrayList<>();
+
+    @Override
+    public String getName() {
+        return "merge";
+    }
+
+    @Override
+    public JavaSee.ExitStatus start(PrintStream out, PrintStream err) {
+        var formatter = new Formatters.JSONFormatter(out, err);
+        var issues = new TreeMap<List<Object>, Object>(MergeCommand::compareKeys);
+        var errors = new LinkedHashMap<List<Object>, Object>();
+        // a rule disabled in any of the shards is reported once, with the reason first read
+        var disabledRules = new LinkedHashMap<Object, Object>();
+        // the shards check disjoint files, so the counts and the times spent are summed
+        int scripts = 0;
+        double walkTime = 0;
+        Object fatalError = null;
+
+        for(var path:paths) {
+            Map<String, Object> result;
+            try(var reader = Files.newBufferedReader(Paths.get(path))) {
+                result = new Yaml().load(reader);
+            } catch (IOException | YAMLException e) {
+                err.println("Failed to load check result: " + path);
+                err.println(e);
+                return JavaSee.ExitStatus.ERROR;
+            }
+            if(result == null) {
+                err.println("Check result is empty: " + path);
+                return JavaSee.ExitStatus.ERROR;
+            }
+            if(result.containsKey("fatal_error") && fatalError == null) {
+                fatalError = result.get("fatal_error");
+            }
+            for(var issue:list(result.get("issues"))) {
+                issues.putIfAbsent(issueKey((Map<String, Object>)issue), issue);
+            }
+            for(var error:list(result.get("errors"))) {
+                var map = (Map<String, Object>)error;
+                errors.putIfAbsent(List.of(map.get("path"), String.valueOf(((Map<String, Object>)map.get("error")).get("message"))), error);
+            }
+            for(var rule:list(result.get("disabled_rules"))) {
+                disabledRules.putIfAbsent(((Map<String, Object>)rule).get("id"), rule);
+            }
+            if(result.get("stats") instanceof Map<?, ?>) {
+                var stats = (Map<String, Object>)result.get("stats");
+                if(stats.get("scripts") instanceof Number) scripts += ((Number)stats.get("scripts")).intValue();
+                if(stats.get("walk_time") instanceof Number) walkTime += ((Number)stats.get("walk_time")).doubleValue();
+            }
+        }
+
+        if(fatalError != null) {
+            out.print(formatter.toJSONString(Map.of("fatal_error", fatalError), 0));
+            return JavaSee.ExitStatus.ERROR;
+        }
+        out.print(formatter.toJSONString(Map.of(
+                "issues", new ArrayList<>(issues.values()),
+                "errors", new ArrayList<>(errors.values()),
+                "disabled_rules", new ArrayList<>(disabledRules.values()),
+                "stats", Map.of(
+                        "scripts", scripts,
+                        "walk_time", walkTime
+                )
+        ), 0));
+        return issues.isEmpty() ? JavaSee.ExitStatus.OK : JavaSee.ExitStatus.FAILURE;
+    }
+
+    private static List<?> list(Object value) {
+        return value instanceof List<?> ? (List<?>)value : List.of();
+    }
+
+    /**
+     * (script, start line, start column, end line, end column, rule id) identifies an issue
+     */
+    private static List<Object> issueKey(Map<String, Object> issue) {
+        var location = (Map<String, Object>)issue.get("location");
+        var start = (List<?>)location.get("start");
+        var end = (List<?>)location.get("end");
+        var rule = (Map<String, Object>)issue.get("rule");
+        return List.of(issue.get("script"), start.get(0), start.get(1), end.get(0), end.get(1), rule.get("id"));
+    }
+
+    private static int compareKeys(List<Object> a, List<Object> b) {
+        for(int i = 0; i < a.size(); i++) {
+            var l = a.get(i);
+            var r = b.get(i);
+            int result = (l instanceof Integer && r instanceof Integer) ?
+                    Integer.compare((Integer)l, (Integer)r) : String.valueOf(l).compareTo(String.valueOf(r));
+            if(result != 0) return result;
+        }
+        return 0;
+    }
+}
@@ -1,12 +1,8 @@
 package com.github.sider.javasee.command;
 
-import com.github.javaparser.ParseProblemException;
-import com.github.javaparser.ast.Node;
 import com.github.sider.javasee.*;
-import com.github.sider.javasee.ast.AST;
+import com.github.sider.javasee.ast.TypeResolver;
 import com.github.sider.javasee.lib.ConsoleColors;
-import com.github.sider.javasee.lib.Libs;
-import com.github.sider.javasee.lib.Ref;
 import org.kohsuke.args4j.Option;
 import org.yaml.snakeyaml.Yaml;
 import org.yaml.snakeyaml.error.YAMLException;
@@ -15,24 +11,27 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-
-class JavaParserError extends RuntimeException {
-    public String source;
-
-    JavaParserError(String source, Throwable cause) {
-        super();
-        this.initCause(cause);
-        this.source = source;
-    }
-}
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class TestCommand implements CLICommand {
     @Option(name="-config", aliases = "--config", metaVar = "<config>", usage = "config YAML file", help = true)
     public String optionConfig = "javasee.yml";
 
+    @Option(name = "-format", aliases = "--format", metaVar = "<format>", usage = "output format (text, junit, or json)", help = true)
+    public String optionFormat = "text";
+
+    /**
+     * Number of rules tested ahead of the rule reported next
+     */
+    private static final int WINDOW = 2 * Runtime.getRuntime().availableProcessors();
+
     private boolean success = true;
 
     public void fail() {
@@ -50,6 +49,20 @@ public class TestCommand implements CLICommand {
 
     @Override
     public JavaSee.ExitStatus start(PrintStream out, PrintStream err) {
+        TestFormatters.AbstractFormatter formatter;
+        switch(optionFormat) {
+            case "text":
+                formatter = new TestFormatters.TextFormatter(out, err);
+                break;
+            case "junit":
+                formatter = new TestFormatters.JUnitFormatter(out, err);
+                break;
+            case "json":
+                formatter = new TestFormatters.JSONFormatter(out, err);
+                break;
+            default:
+                throw new Exceptions.UnknownFormatException(optionFormat);
+        }
         Config config;
         try {
             var configPath = new File(optionConfig);
@@ -75,8 +88,11 @@ public class TestCommand implements CLICommand {
             return JavaSee.ExitStatus.CONFIG_FILE_SYNTAX_ERROR;
         }
 
-        validateRuleUniqueness(out, config.rules);
-        validateRulePatterns(out, err, config.rules);
+        // the other formats write only the report to stdout
+        validateRuleUniqueness(optionFormat.equals("text") ? out : err, config.rules);
+        try(var typeResolver = config.typeResolver) {
+            validateRulePatterns(formatter, config.rules, typeResolver);
+        }
 
         return isFailed() ? JavaSee.ExitStatus.FAILURE : JavaSee.ExitStatus.OK;
     }
@@ -100,91 +116,170 @@ public class TestCommand implements CLICommand {
         if(duplications > 0) fail();
     }
 
-    public void validateRulePatterns(PrintStream out, PrintStream err, List<Rule> rules) {
-        out.println("Checking rule patterns...");
-
-        var tests = 0;
-        var falsePositives = 0;
-        var falseNegatives = 0;
-        var errors = 0;
-
-        for(var rule:rules) {
-            try {
-                {
-                    int exampleIndex = 1;
-                    for (var exampleString : rule.matchExamples) {
-                        if (!rule.patterns.stream().anyMatch((pattern) -> testPattern(pattern, exampleString, true))) {
-                            out.println(ConsoleColors.red(String.format("  %s", rule.id)) + String.format(":\t%s match example didn't match with any pattern", Libs.ordinalize(exampleIndex)));
-                            falseNegatives += 1;
-                        }
-
-                        tests++;
-                        exampleIndex++;
-                    }
-                }
+    /**
+     * Result of an example of a rule
+     */
+    static class ExampleResult {
+        public final Example example;
 
-                {
-                    int exampleIndex = 1;
-                    for(var exampleString:rule.unmatchExamples) {
-                        if (!rule.patterns.stream().allMatch((pattern) -> testPattern(pattern, exampleString, false))) {
-                            out.println(ConsoleColors.red(String.format("  %s", rule.id)) + String.format(":\t%s unmatch example matched with some of patterns", Libs.ordinalize(exampleIndex)));
-                            falsePositives += 1;
-                        }
+        /**
+         * 1-origin index in the match or unmatch examples
+         */
+        public final int index;
+        public final boolean expected;
 
-                        tests += 1;
-                        exampleIndex++;
-                    }
-                }
-            } catch (JavaParserError error) {
-                err.println(String.format("Failed to parse an example in `%s`", rule.id));
-                err.println("  Examples should be one of Java expression, statement, or compilation unit.");
-                err.println(String.format("    %s", error.source.split("\n")[0]));
-                errors++;
-            }
+        /**
+         * Whether any of the patterns matched, or false if the example failed to parse or to be tested
+         */
+        public final boolean actual;
+        public final long elapsedNanos;
+
+        /**
+         * Exception thrown while testing the patterns on the example, or null
+         */
+        public final RuntimeException exception;
+
+        ExampleResult(Example example, int index, boolean expected, boolean actual, long elapsedNanos, RuntimeException exception) {
+            this.example = example;
+            this.index = index;
+            this.expected = expected;
+            this.actual = actual;
+            this.elapsedNanos = elapsedNanos;
+            this.exception = exception;
         }
 
-        out.println(String.format("Tested %d rules with %d tests", rules.size(), tests));
-        if(falsePositives > 0 || falseNegatives >0 | errors > 0) {
-            out.println("  " + falsePositives + " examples found which should not match, but matched");
-            out.println("  " + falseNegatives + " examples found which should match, but didn't");
-            out.println(String.format("  %d errors reported", errors));
-            fail();
-        } else {
-            out.println(ConsoleColors.green("  All tests green!"));
+        public boolean isError() {
+            return !example.isParsed() || exception != null;
+        }
+
+        public boolean isPassed() {
+            return !isError() && expected == actual;
+        }
+
+        public String getName() {
+            return (expected ? "match" : "unmatch") + " example " + index;
         }
     }
 
-    private boolean testPattern(AST.Expression pattern, String exampleString, boolean expected) throws JavaParserError {
-        var analyzer = new Analyzer(null, null, null);
-        var found = Ref.of(false);
+    /**
+     * Results of the examples of a rule, match examples first.  The examples after an error are not tested.
+     */
+    static class RuleResult {
+        public final Rule rule;
+        public final List<ExampleResult> examples;
+        public final long elapsedNanos;
 
-        try {
-            var node = parse(exampleString);
-            new NodePair(node, null).eachSubPair((pair) -> {
-                if(analyzer.testPair(pair, pattern)) {
-                    found.set(true);
-                }
-            });
+        RuleResult(Rule rule, List<ExampleResult> examples, long elapsedNanos) {
+            this.rule = rule;
+            this.examples = examples;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * Returns the example failed to parse or to be tested, or null
+         */
+        public ExampleResult getError() {
+            return !examples.isEmpty() && examples.get(examples.size() - 1).isError() ? examples.get(examples.size() - 1) : null;
+        }
 
-            return found.get() == expected;
-        } catch (ParseProblemException e) {
-            throw new JavaParserError(exampleString, e);
+        public long count(Predicate<ExampleResult> predicate) {
+            return examples.stream().filter(predicate).count();
         }
     }
 
-    private Node parse(String example) {
-        try {
-            return new JavaParser().parseExpression(example);
-        } catch (ParseProblemException e1) {
-            try {
-                return new JavaParser().parseStatement(example);
-            } catch (ParseProblemException e2) {
-                try {
-                    return new JavaParser().parseStatements(example);
-                } catch (ParseProblemException e3) {
-                    return new JavaParser().parse(example);
+    /**
+     * Numbers of the tests of all the rules
+     */
+    static class Summary {
+        public int rules;
+        public int tests;
+        public int falsePositives;
+        public int falseNegatives;
+        public int errors;
+        public long elapsedNanos;
+
+        public boolean isPassed() {
+            return falsePositives == 0 && falseNegatives == 0 && errors == 0;
+        }
+    }
+
+    /**
+     * Parses each example once, and tests all the patterns of the rule on it with the type resolver.  An exception
+     * thrown by the patterns is reported as an error of the example.
+     */
+    static RuleResult testRule(Rule rule, TypeResolver typeResolver) {
+        var start = System.nanoTime();
+        var results = new ArrayList<ExampleResult>();
+        try(var scope = TypeResolver.use(typeResolver)) {
+            for(var expected:List.of(true, false)) {
+                int index = 1;
+                for(var source:expected ? rule.matchExamples : rule.unmatchExamples) {
+                    var exampleStart = System.nanoTime();
+                    var example = Example.parse(source);
+                    var actual = false;
+                    RuntimeException exception = null;
+                    try {
+                        actual = example.isParsed() && example.matches(rule.patterns);
+                    } catch (RuntimeException e) {
+                        exception = e;
+                    }
+                    var result = new ExampleResult(example, index++, expected, actual, System.nanoTime() - exampleStart, exception);
+                    results.add(result);
+                    if(result.isError()) return new RuleResult(rule, results, System.nanoTime() - start);
                 }
             }
         }
+        return new RuleResult(rule, results, System.nanoTime() - start);
+    }
+
+    /**
+     * Tests the rules in parallel, and gives the results to consumer in the order of the rules as soon as each of them
+     * is available.  At most WINDOW rules are tested or waiting for the earlier rules at a time, so that the results
+     * kept are bounded regardless of the number of rules.
+     */
+    static void testRules(List<Rule> rules, TypeResolver typeResolver, Consumer<RuleResult> consumer) {
+        var pending = new ArrayDeque<CompletableFuture<RuleResult>>();
+        int next = 0;
+        while(next < rules.size() || !pending.isEmpty()) {
+            while(next < rules.size() && pending.size() < WINDOW) {
+                var rule = rules.get(next++);
+                pending.add(CompletableFuture.supplyAsync(() -> testRule(rule, typeResolver)));
+            }
+            consumer.accept(pending.poll().join());
+        }
+    }
+
+    public void validateRulePatterns(PrintStream out, PrintStream err, List<Rule> rules) {
+        validateRulePatterns(new TestFormatters.TextFormatter(out, err), rules, TypeResolver.DEFAULT);
+    }
+
+    /**
+     * Reports the result of each rule to formatter as soon as it and the rules before it are tested, so that only the
+     * results of the rules in the window of testRules are kept
+     */
+    void validateRulePatterns(TestFormatters.AbstractFormatter formatter, List<Rule> rules, TypeResolver typeResolver) {
+        var start = System.nanoTime();
+        var summary = new Summary();
+        summary.rules = rules.size();
+        formatter.onStart();
+        testRules(rules, typeResolver, result -> {
+            for(var example:result.examples) {
+                if(example.isError()) {
+                    summary.errors++;
+                    continue;
+                }
+                summary.tests++;
+                if(example.isPassed()) continue;
+                if(example.expected) {
+                    summary.falseNegatives++;
+                } else {
+                    summary.falsePositives++;
+                }
+            }
+            formatter.onRuleTested(result);
+        });
+        summary.elapsedNanos = System.nanoTime() - start;
+        formatter.onFinish(summary);
+        if(!summary.isPassed()) fail();
     }
 }
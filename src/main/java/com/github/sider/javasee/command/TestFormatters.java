@@ -0,0 +1,232 @@
+package com.github.sider.javasee.command;
+
+import com.github.sider.javasee.Formatters;
+import com.github.sider.javasee.lib.ConsoleColors;
+import com.github.sider.javasee.lib.Libs;
+
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Reports of the test command.  Each rule is reported as soon as it is tested, so that the reports of large rule sets
+ * are streamed.
+ */
+class TestFormatters {
+    static abstract class AbstractFormatter {
+        protected final PrintStream stdout;
+        protected final PrintStream stderr;
+
+        AbstractFormatter(PrintStream stdout, PrintStream stderr) {
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+
+        /**
+         * Called before the rules are tested
+         */
+        public abstract void onStart();
+
+        /**
+         * Called with the results of each rule in the order of the rules
+         */
+        public abstract void onRuleTested(TestCommand.RuleResult result);
+
+        /**
+         * Called after all the rules are tested
+         */
+        public abstract void onFinish(TestCommand.Summary summary);
+
+        protected static String errorMessage(TestCommand.ExampleResult result) {
+            if(result.exception != null) return String.valueOf(result.exception);
+            var example = result.example;
+            return example.problems.isEmpty() ? "Failed to parse" : example.problems.get(0).getMessage();
+        }
+
+        protected static String seconds(long nanos) {
+            return String.format(Locale.ROOT, "%.6f", nanos / 1e9);
+        }
+    }
+
+    static class TextFormatter extends AbstractFormatter {
+        TextFormatter(PrintStream stdout, PrintStream stderr) {
+            super(stdout, stderr);
+        }
+
+        @Override
+        public void onStart() {
+            stdout.println("Checking rule patterns...");
+        }
+
+        @Override
+        public void onRuleTested(TestCommand.RuleResult result) {
+            var rule = result.rule;
+            for(var example:result.examples) {
+                if(example.exception != null) {
+                    stderr.println(String.format("Failed to test an example in `%s`: %s", rule.id, example.exception));
+                    stderr.println(String.format("    %s", example.example.source.split("\n")[0]));
+                } else if(example.isError()) {
+                    stderr.println(String.format("Failed to parse an example in `%s`", rule.id));
+                    stderr.println("  Examples should be one of Java expression, statement, or compilation unit.");
+                    stderr.println(String.format("    %s", example.example.source.split("\n")[0]));
+                } else if(!example.isPassed() && example.expected) {
+                    stdout.println(ConsoleColors.red(String.format("  %s", rule.id)) + String.format(":\t%s match example didn't match with any pattern", Libs.ordinalize(example.index)));
+                } else if(!example.isPassed()) {
+                    stdout.println(ConsoleColors.red(String.format("  %s", rule.id)) + String.format(":\t%s unmatch example matched with some of patterns", Libs.ordinalize(example.index)));
+                }
+            }
+        }
+
+        @Override
+        public void onFinish(TestCommand.Summary summary) {
+            stdout.println(String.format("Tested %d rules with %d tests", summary.rules, summary.tests));
+            if(!summary.isPassed()) {
+                stdout.println("  " + summary.falsePositives + " examples found which should not match, but matched");
+                stdout.println("  " + summary.falseNegatives + " examples found which should match, but didn't");
+                stdout.println(String.format("  %d errors reported", summary.errors));
+            } else {
+                stdout.println(ConsoleColors.green("  All tests green!"));
+            }
+        }
+    }
+
+    /**
+     * JUnit XML report, where each rule is a test suite and each example is a test case named like
+     * {@code match example 1}
+     */
+    static class JUnitFormatter extends AbstractFormatter {
+        JUnitFormatter(PrintStream stdout, PrintStream stderr) {
+            super(stdout, stderr);
+        }
+
+        @Override
+        public void onStart() {
+            stdout.println("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+            stdout.println("<testsuites name=\"javasee\">");
+        }
+
+        @Override
+        public void onRuleTested(TestCommand.RuleResult result) {
+            var id = escape(result.rule.id);
+            stdout.println(String.format("  <testsuite name=\"%s\" tests=\"%d\" failures=\"%d\" errors=\"%d\" time=\"%s\">",
+                    id, result.examples.size(), result.count(e -> !e.isError() && !e.isPassed()), result.count(TestCommand.ExampleResult::isError), seconds(result.elapsedNanos)));
+            for(var example:result.examples) {
+                stdout.print(String.format("    <testcase classname=\"%s\" name=\"%s\" time=\"%s\"", id, example.getName(), seconds(example.elapsedNanos)));
+                if(example.isPassed()) {
+                    stdout.println("/>");
+                    continue;
+                }
+                stdout.println(">");
+                if(example.isError()) {
+                    stdout.println(String.format("      <error message=\"%s\">%s</error>", escape(errorMessage(example)), escape(example.example.source)));
+                } else {
+                    var message = example.expected ? "expected to match, but didn't match with any pattern" : "expected not to match, but matched with some of patterns";
+                    stdout.println(String.format("      <failure message=\"%s\">%s</failure>", message, escape(example.example.source)));
+                }
+                stdout.println("    </testcase>");
+            }
+            stdout.println("  </testsuite>");
+            stdout.flush();
+        }
+
+        @Override
+        public void onFinish(TestCommand.Summary summary) {
+            stdout.println("</testsuites>");
+        }
+
+        /**
+         * Escapes the text for attribute values and contents, replacing characters not allowed in XML with U+FFFD
+         */
+        static String escape(String text) {
+            var builder = new StringBuilder(text.length());
+            for(int i = 0; i < text.length(); i++) {
+                var ch = text.charAt(i);
+                switch(ch) {
+                    case '&':
+                        builder.append("&amp;");
+                        break;
+                    case '<':
+                        builder.append("&lt;");
+                        break;
+                    case '>':
+                        builder.append("&gt;");
+                        break;
+                    case '"':
+                        builder.append("&quot;");
+                        break;
+                    default:
+                        if(ch < 0x20 && ch != '\t' && ch != '\n' && ch != '\r' || ch == '\uFFFE' || ch == '\uFFFF') {
+                            builder.append('\uFFFD');
+                        } else {
+                            builder.append(ch);
+                        }
+                }
+            }
+            return builder.toString();
+        }
+    }
+
+    /**
+     * JSON report of the form {@code {"rules": [...], "summary": {...}}}, whose rules are written one by one
+     */
+    static class JSONFormatter extends AbstractFormatter {
+        private final Formatters.JSONFormatter json;
+        private boolean first = true;
+
+        JSONFormatter(PrintStream stdout, PrintStream stderr) {
+            super(stdout, stderr);
+            this.json = new Formatters.JSONFormatter(stdout, stderr);
+        }
+
+        @Override
+        public void onStart() {
+            stdout.print("{\n\"rules\":[");
+        }
+
+        @Override
+        public void onRuleTested(TestCommand.RuleResult result) {
+            var rule = new LinkedHashMap<String, Object>();
+            rule.put("id", result.rule.id);
+            rule.put("tests", result.examples.size());
+            rule.put("failures", (int)result.count(e -> !e.isError() && !e.isPassed()));
+            rule.put("errors", (int)result.count(TestCommand.ExampleResult::isError));
+            rule.put("time", result.elapsedNanos / 1e9);
+            rule.put("examples", result.examples.stream().map(JSONFormatter::toJSON).collect(Collectors.toList()));
+            if(!first) stdout.print(",");
+            first = false;
+            stdout.print(json.toJSONString(rule, 1));
+            stdout.flush();
+        }
+
+        private static Map<String, Object> toJSON(TestCommand.ExampleResult example) {
+            var result = new LinkedHashMap<String, Object>();
+            result.put("kind", example.expected ? "match" : "unmatch");
+            result.put("index", example.index);
+            result.put("source", example.example.source);
+            result.put("expected", example.expected);
+            if(example.isError()) {
+                result.put("error", errorMessage(example));
+            } else {
+                result.put("actual", example.actual);
+            }
+            result.put("passed", example.isPassed());
+            result.put("time", example.elapsedNanos / 1e9);
+            return result;
+        }
+
+        @Override
+        public void onFinish(TestCommand.Summary summary) {
+            var result = new LinkedHashMap<String, Object>();
+            result.put("rules", summary.rules);
+            result.put("tests", summary.tests);
+            result.put("false_positives", summary.falsePositives);
+            result.put("false_negatives", summary.falseNegatives);
+            result.put("errors", summary.errors);
+            result.put("time", summary.elapsedNanos / 1e9);
+            stdout.print("],\n\"summary\":" + json.toJSONString(result, 1) + "}\n");
+        }
+    }
+}
@@ -1,11 +1,20 @@
 package com.github.sider.javasee;
 
+import com.github.javaparser.StaticJavaParser;
 import com.github.sider.javasee.command.CheckCommand;
+import jdk.jfr.Name;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Test;
 
 import java.io.*;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -30,4 +39,424 @@ public class CheckCommandTest {
             new String(out.toByteArray()))
         ;
     }
+
+    @Test
+    public void testCheckShard() throws Exception {
+        var yaml = "rules:\n" +
+                   "  - id: check-println\n" +
+                   "    pattern: _.println(...)\n" +
+                   "    message: |\n" +
+                   "      println() is detected\n";
+        TestHelper.mkTmpDir((dir) -> {
+            try {
+                var configFile = new File(dir, "javasee.yml");
+                Files.writeString(configFile.toPath(), yaml);
+                for(int i = 0; i < 20; i++) {
+                    Files.writeString(new File(dir, "Println" + i + ".java").toPath(), "class Println" + i + " { void f() { System.out.println(); } }");
+                }
+
+                var total = 0;
+                for(int i = 1; i <= 3; i++) {
+                    CheckCommand check = new CheckCommand();
+                    check.optionConfig = configFile.getPath();
+                    check.optionShard = i + "/3";
+                    check.paths = List.of(dir.getPath());
+                    var out = new ByteArrayOutputStream();
+                    check.start(new PrintStream(out), System.err);
+                    total += new String(out.toByteArray()).lines().count();
+                }
+                assertEquals(20, total);
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+    }
+
+    @Test
+    public void testCheckExplicitFiles() throws Exception {
+        var yaml = "rules:\n" +
+                   "  - id: check-println\n" +
+                   "    pattern: _.println(...)\n" +
+                   "    message: |\n" +
+                   "      println() is detected\n";
+        TestHelper.mkTmpDir((dir) -> {
+            try {
+                var configFile = new File(dir, "javasee.yml");
+                Files.writeString(configFile.toPath(), yaml);
+                for(int i = 0; i < 3; i++) {
+                    Files.writeString(new File(dir, "Println" + i + ".java").toPath(), "class Println" + i + " { void f() { System.out.println(); } }");
+                }
+                Files.writeString(new File(dir, "Println.txt").toPath(), "class Println { void f() { System.out.println(); } }");
+
+                CheckCommand check = new CheckCommand();
+                check.optionConfig = configFile.getPath();
+                check.paths = List.of(new File(dir, "Println0.java").getPath(), new File(dir, "Println.txt").getPath());
+                check.optionFilesFrom = "-";
+                check.stdin = new ByteArrayInputStream((new File(dir, "Println1.java").getPath() + "\0" + new File(dir, "Println.txt").getPath() + "\0" + new File(dir, "Println0.java").getPath() + "\0").getBytes());
+                var out = new ByteArrayOutputStream();
+                assertEquals(JavaSee.ExitStatus.FAILURE, check.start(new PrintStream(out), System.err));
+                var lines = new String(out.toByteArray()).lines().map(line -> line.split(":")[0]).collect(Collectors.toList());
+                // a file given twice is checked once, and files other than sources are skipped
+                assertEquals(List.of(
+                        new File(dir, "Println0.java").getPath(),
+                        new File(dir, "Println1.java").getPath()
+                ), lines);
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+    }
+
+    @Test
+    public void testCheckStdin() throws Exception {
+        var yaml = "rules:\n" +
+                   "  - id: check-println\n" +
+                   "    pattern: _.println(...)\n" +
+                   "    message: |\n" +
+                   "      println() is detected\n";
+        var configFile = File.createTempFile("abc", "def");
+        Files.writeString(configFile.toPath(), yaml);
+        CheckCommand check = new CheckCommand();
+        check.optionConfig = configFile.getPath();
+        check.optionStdin = true;
+        check.optionStdinFilename = "src/Foo.java";
+        check.stdin = new ByteArrayInputStream("class Foo {\n  void f() { System.out.println(); }\n}\n".getBytes());
+        var out = new ByteArrayOutputStream();
+        assertEquals(JavaSee.ExitStatus.FAILURE, check.start(new PrintStream(out), System.err));
+        assertEquals(
+                "src/Foo.java:2:14\t\u001B[31m  void f() { System.out.println(); }\u001B[0m\tprintln() is detected(check-println)\n",
+                new String(out.toByteArray())
+        );
+    }
+
+    @Test
+    public void testStdinOptionsConflict() {
+        var check = new CheckCommand();
+        check.optionStdin = true;
+        check.optionFilesFrom = "-";
+        var e = assertThrows(Exceptions.InvalidOptionException.class, () -> check.start(System.out, System.err));
+        assertEquals("-stdin and -files-from - cannot be used together", e.getMessage());
+
+        var batch = new CheckCommand();
+        batch.optionStdin = true;
+        batch.optionStdinBatch = true;
+        assertThrows(Exceptions.InvalidOptionException.class, () -> batch.start(System.out, System.err));
+    }
+
+    @Test
+    public void testCheckStdinBatch() throws Exception {
+        var yaml = "rules:\n" +
+                   "  - id: check-println\n" +
+                   "    pattern: _.println(...)\n" +
+                   "    message: |\n" +
+                   "      println() is detected\n";
+        var configFile = File.createTempFile("abc", "def");
+        Files.writeString(configFile.toPath(), yaml);
+        var input = new ByteArrayOutputStream();
+        for(var record:List.of(List.of("A.java", "class A { void f() { System.out.println(); } }"), List.of("B.java", "class B {}"), List.of("Ç.java", "class C { void f() { out.println(\"ç\"); } }"))) {
+            var name = record.get(0).getBytes(StandardCharsets.UTF_8);
+            var content = record.get(1).getBytes(StandardCharsets.UTF_8);
+            input.write((name.length + " " + content.length + "\n").getBytes(StandardCharsets.UTF_8));
+            input.write(name);
+            input.write(content);
+        }
+        CheckCommand check = new CheckCommand();
+        check.optionConfig = configFile.getPath();
+        check.optionStdinBatch = true;
+        check.stdin = new ByteArrayInputStream(input.toByteArray());
+        var out = new ByteArrayOutputStream();
+        assertEquals(JavaSee.ExitStatus.FAILURE, check.start(new PrintStream(out, true, StandardCharsets.UTF_8), System.err));
+        var lines = new String(out.toByteArray(), StandardCharsets.UTF_8).lines().map(line -> line.split(":")[0]).collect(Collectors.toList());
+        assertEquals(List.of("A.java", "Ç.java"), lines);
+    }
+
+    @Test
+    public void testCheckJfr() throws Exception {
+        var yaml = "rules:\n" +
+                   "  - id: check-println\n" +
+                   "    pattern: _.println(...)\n" +
+                   "    message: |\n" +
+                   "      println() is detected\n";
+        var configFile = File.createTempFile("abc", "def");
+        Files.writeString(configFile.toPath(), yaml);
+        var recordingFile = File.createTempFile("javasee", ".jfr");
+        CheckCommand check = new CheckCommand();
+        check.optionConfig = configFile.getPath();
+        check.optionJfr = recordingFile.getPath();
+        check.paths = List.of("src/test/resources/check");
+        check.start(new PrintStream(new ByteArrayOutputStream()), System.err);
+
+        var events = RecordingFile.readAllEvents(recordingFile.toPath());
+        var names = events.stream().map(event -> event.getEventType().getName()).collect(Collectors.toSet());
+        for(var eventClass:Events.EVENT_CLASSES) {
+            assertTrue(names.contains(eventClass.getAnnotation(Name.class).value()), eventClass.getName());
+        }
+        var match = events.stream().filter(event -> event.getEventType().getName().equals("com.github.sider.javasee.RuleMatch")).findFirst().get();
+        assertEquals("check-println", match.getString("ruleId"));
+        assertEquals(1, match.getInt("matchCount"));
+        var parse = events.stream().filter(event -> event.getEventType().getName().equals("com.github.sider.javasee.Parse")).findFirst().get();
+        assertEquals(Files.readString(new File("src/test/resources/check/Println.java").toPath()).length(), parse.getLong("characters"));
+    }
+
+    @Test
+    public void testCheckProgress() throws Exception {
+        var yaml = "rules:\n" +
+                   "  - id: check-println\n" +
+                   "    pattern: _.println(...)\n" +
+                   "    message: |\n" +
+                   "      println() is detected\n";
+        var configFile = File.createTempFile("abc", "def");
+        Files.writeString(configFile.toPath(), yaml);
+        CheckCommand check = new CheckCommand();
+        check.optionConfig = configFile.getPath();
+        check.optionProgress = true;
+        check.paths = List.of("src/test/resources/check");
+        var err = new StringPrintStream();
+        check.start(new PrintStream(new ByteArrayOutputStream()), err.getStream());
+        assertTrue(err.getString().startsWith("[javasee] Checked 1 files (5 lines) in "), err.getString());
+        assertTrue(err.getString().contains(", 1 issues: enumeration "), err.getString());
+    }
+
+    @Test
+    public void testProgressLog() throws Exception {
+        var err = new StringPrintStream();
+        var progress = new Progress(err.getStream(), false, Duration.ofMillis(10));
+        progress.onEnumerated(2, Duration.ofMillis(1));
+        progress.onParsed(100, 1000);
+        progress.onMatched(1000);
+        progress.onIssueFound();
+        Thread.sleep(100);
+        progress.close();
+        var lines = err.getString().lines().collect(Collectors.toList());
+        assertTrue(lines.get(0).startsWith("[javasee] 1/2 files (1 parsed), "), lines.get(0));
+        assertTrue(lines.get(0).contains(" 1 issues, heap "), lines.get(0));
+        assertTrue(lines.get(lines.size() - 1).startsWith("[javasee] Checked 1 files (100 lines) in "), lines.get(lines.size() - 1));
+    }
+
+    @Test
+    public void testCheckFileTimeout() throws Exception {
+        var yaml = "rules:\n" +
+                   "  - id: check-println\n" +
+                   "    pattern: _.println(...)\n" +
+                   "    message: |\n" +
+                   "      println() is detected\n";
+        var configFile = File.createTempFile("abc", "def");
+        Files.writeString(configFile.toPath(), yaml);
+        CheckCommand check = new CheckCommand();
+        check.optionConfig = configFile.getPath();
+        check.optionFileTimeout = "60";
+        check.paths = List.of("src/test/resources/check");
+        var out = new ByteArrayOutputStream();
+        assertEquals(JavaSee.ExitStatus.FAILURE, check.start(new PrintStream(out), System.err));
+        assertEquals(1, new String(out.toByteArray()).lines().count());
+    }
+
+    @Test
+    public void testFileWatchdog() throws Exception {
+        var script = new JavaFile(new File("Loop.java"), () -> new com.github.javaparser.JavaParser(), CharBuffer.wrap("class Loop { char c = 'é'; }"));
+        var released = new CountDownLatch(1);
+        try(var watchdog = new FileWatchdog(Duration.ofMillis(50))) {
+            assertEquals("done", watchdog.run(script, () -> "done"));
+            var error = assertThrows(Exceptions.FileTimeoutException.class, () -> watchdog.run(script, () -> {
+                // holds the lock of the file as parseFile does, even after the watchdog gave up
+                synchronized(script) {
+                    while(released.getCount() > 0) {
+                        Thread.onSpinWait();
+                    }
+                }
+                return null;
+            }));
+            assertTrue(error.getMessage().startsWith("Analysis timed out after "), error.getMessage());
+            assertTrue(error.getMessage().endsWith(": Loop.java (29 bytes)"), error.getMessage());
+            released.countDown();
+        }
+    }
+
+    @Test
+    public void testMatchIsCancelledByInterrupt() {
+        var rules = RuleSet.fromYaml("- id: any\n  pattern: _\n  message: any\n");
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(Exceptions.AnalysisCancelledException.class, () -> rules.analyze(StaticJavaParser.parse("class A {}"), (finding) -> true));
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void testReadPathList() {
+        var paths = new ArrayList<String>();
+        PathList.read(new StringReader("A.java\r\nsrc/B.java\n\nC D.java\0E.java"), paths::add);
+        assertEquals(List.of("A.java", "src/B.java", "C D.java", "E.java"), paths);
+    }
+
+    @Test
+    public void testShardIsStable() {
+        assertTrue(new Shard(1, 1).contains("src/main/java/Foo.java"));
+        assertEquals(new Shard(2, 4).contains("src/main/java/Foo.java"), Shard.parse("2/4").contains("src/main/java/Foo.java"));
+        assertEquals("src/Foo.java", Shard.relativePath(new File("/work"), new File("/work/src/Foo.java")));
+        assertThrows(Exceptions.InvalidOptionException.class, () -> Shard.parse("3/2"));
+        assertThrows(Exceptions.InvalidOptionException.class, () -> Shard.parse("1"));
+    }
+
+    @Test
+    public void testCheckBaseline() throws Exception {
+        var yaml = "rules:\n" +
+                   "  - id: check-println\n" +
+                   "    pattern: _.println(...)\n" +
+                   "    message: println() is detected\n";
+        TestHelper.mkTmpDir((dir) -> {
+            try {
+                var configFile = new File(dir, "javasee.yml");
+                Files.writeString(configFile.toPath(), yaml);
+                var source = new File(dir, "Println.java");
+                var baselineFile = new File(dir, "baseline.bin");
+                Files.writeString(source.toPath(), "class Println {\n  void f() {\n    System.out.println(1);\n    System.out.println(1);\n  }\n}\n");
+
+                CheckCommand write = new CheckCommand();
+                write.optionConfig = configFile.getPath();
+                write.optionBaseline = baselineFile.getPath();
+                write.optionWriteBaseline = true;
+                write.paths = List.of(dir.getPath());
+                var out = new ByteArrayOutputStream();
+                assertEquals(JavaSee.ExitStatus.OK, write.start(new PrintStream(out), new PrintStream(new ByteArrayOutputStream())));
+                assertEquals("", out.toString());
+                assertEquals(2, Baseline.load(baselineFile.toPath()).size());
+
+                // shifted lines and reformatted findings are still in the baseline, but the third one is new
+                Files.writeString(source.toPath(), "import java.util.*;\n\nclass Println {\n  void f() {\n    System.out.println( 1 );\n    System.out.println(1);\n    System.out.println(1);\n  }\n}\n");
+                CheckCommand check = new CheckCommand();
+                check.optionConfig = configFile.getPath();
+                check.optionBaseline = baselineFile.getPath();
+                check.optionFormat = "json";
+                check.paths = List.of(dir.getPath());
+                out = new ByteArrayOutputStream();
+                assertEquals(JavaSee.ExitStatus.FAILURE, check.start(new PrintStream(out), System.err));
+                assertTrue(out.toString().contains("\"start\":[7, 5]"), out.toString());
+                assertFalse(out.toString().contains("\"start\":[5, 5]"), out.toString());
+                assertFalse(out.toString().contains("\"start\":[6, 5]"), out.toString());
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+    }
+
+    @Test
+    public void testBaselineLookup() throws Exception {
+        var fingerprints = new long[1000];
+        for(int i = 0; i < fingerprints.length; i++) {
+            fingerprints[i] = (i + 1) * 0x9e3779b97f4a7c15L;
+        }
+        var baseline = Baseline.of(fingerprints);
+        assertEquals(1000, baseline.size());
+        for(var fingerprint:fingerprints) {
+            assertTrue(baseline.contains(fingerprint));
+        }
+        assertFalse(baseline.contains(1));
+        assertFalse(baseline.contains(-1));
+
+        var file = File.createTempFile("baseline", ".bin");
+        Files.writeString(file.toPath(), "not a baseline");
+        assertThrows(Exceptions.InvalidInputException.class, () -> Baseline.load(file.toPath()));
+        assertThrows(Exceptions.InvalidOptionException.class, () -> {
+            var check = new CheckCommand();
+            check.optionWriteBaseline = true;
+            check.start(System.out, System.err);
+        });
+    }
+
+    @Test
+    public void testCheckFix() throws Exception {
+        var yaml = "rules:\n" +
+                   "  - id: size-zero\n" +
+                   "    pattern: $x.size() == 0\n" +
+                   "    message: use isEmpty()\n" +
+                   "    fix: $x.isEmpty()\n" +
+                   "  - id: check-size-zero\n" +
+                   "    pattern: check($x.size() == 0)\n" +
+                   "    message: use isEmpty()\n" +
+                   "    fix: check($x.isEmpty())\n" +
+                   "  - id: check-println\n" +
+                   "    pattern: _.println(...)\n" +
+                   "    message: println() is detected\n";
+        TestHelper.mkTmpDir((dir) -> {
+            try {
+                var configFile = new File(dir, "javasee.yml");
+                Files.writeString(configFile.toPath(), yaml);
+                var a = new File(dir, "A.java");
+                var b = new File(dir, "B.java");
+                Files.writeString(a.toPath(), "class A {\n  boolean f(java.util.List<String> list) {\n    return list.size()  ==  0 || check(list.get(0).size() == 0);\n  }\n}\n");
+                Files.writeString(b.toPath(), "class B {\n  void f(java.util.List<String> list) {\n    System.out.println(list.size() == 0);\n  }\n}\n");
+
+                CheckCommand check = new CheckCommand();
+                check.optionConfig = configFile.getPath();
+                check.optionFix = true;
+                // the overlapping paths don't fix A twice
+                check.paths = List.of(dir.getPath(), a.getPath());
+                var out = new ByteArrayOutputStream();
+                var err = new StringPrintStream();
+                assertEquals(JavaSee.ExitStatus.FAILURE, check.start(new PrintStream(out), err.getStream()));
+
+                // the outer edit wins over the overlapping inner one, and issues not fixed are reported
+                assertEquals("class A {\n  boolean f(java.util.List<String> list) {\n    return list.isEmpty() || check(list.get(0).isEmpty());\n  }\n}\n", Files.readString(a.toPath()));
+                assertEquals("class B {\n  void f(java.util.List<String> list) {\n    System.out.println(list.isEmpty());\n  }\n}\n", Files.readString(b.toPath()));
+                assertTrue(out.toString().contains("(check-println)"), out.toString());
+                assertEquals(1, out.toString().lines().filter(line -> line.contains("(size-zero)")).count(), out.toString());
+                assertEquals("Fixed 3 issues in 2 files\n", err.getString());
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+    }
+
+    @Test
+    public void testCheckFixWithTypes() throws Exception {
+        TestHelper.mkTmpDir((dir) -> {
+            try {
+                var sources = new File(dir, "src/com/example");
+                assertTrue(sources.mkdirs());
+                Files.writeString(new File(sources, "Money.java").toPath(), "package com.example;\n" +
+                        "public class Money {\n" +
+                        "  public Money add(Money other) { return this; }\n" +
+                        "  public Money plus(Money other) { return this; }\n" +
+                        "}\n");
+                var yaml = "types:\n" +
+                           "  source_roots: " + new File(dir, "src").getAbsolutePath() + "\n" +
+                           "rules:\n" +
+                           "  - id: money-add\n" +
+                           "    pattern: ($m:com.example.Money).add($x)\n" +
+                           "    message: use plus()\n" +
+                           "    fix: $m.plus($x)\n";
+                var configFile = new File(dir, "javasee.yml");
+                Files.writeString(configFile.toPath(), yaml);
+                var a = new File(dir, "A.java");
+                Files.writeString(a.toPath(), "package p;\nclass A {\n  Object f(com.example.Money m, java.math.BigDecimal d) {\n    return m.add(m) == d.add(d);\n  }\n}\n");
+
+                CheckCommand check = new CheckCommand();
+                check.optionConfig = configFile.getPath();
+                check.optionFix = true;
+                check.paths = List.of(a.getPath());
+                var out = new ByteArrayOutputStream();
+                var err = new StringPrintStream();
+                assertEquals(JavaSee.ExitStatus.OK, check.start(new PrintStream(out), err.getStream()), out.toString());
+
+                assertEquals("package p;\nclass A {\n  Object f(com.example.Money m, java.math.BigDecimal d) {\n    return m.plus(m) == d.add(d);\n  }\n}\n", Files.readString(a.toPath()));
+                assertEquals("Fixed 1 issues in 1 files\n", err.getString());
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+    }
+
+    @Test
+    public void testResolveFixes() {
+        var edits = List.of(
+                new Fixes.Edit(4, 6, "y", "b"),
+                new Fixes.Edit(0, 3, "A", "a"),
+                new Fixes.Edit(4, 9, "X", "c"),
+                new Fixes.Edit(2, 5, "Z", "d"));
+        var resolved = Fixes.resolve(edits);
+        assertEquals(List.of(edits.get(1), edits.get(2)), resolved);
+        assertEquals("A X", Fixes.apply("abc defgh", resolved));
+    }
 }
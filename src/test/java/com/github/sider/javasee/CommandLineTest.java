@@ -142,8 +142,10 @@ public class CommandLineTest {
         var main = new Main(stdout.getStream(), stderr.getStream(), "javasee");
         assertEquals(Optional.empty(), main.parse(new String[] { "test", "-help" }));
 
-        assertEquals("Usage: javasee test [-config (--config) <config>]\n" +
-                " -config (--config) <config> : config YAML file (default: javasee.yml)\n", stdout.getString());
+        assertEquals("Usage: javasee test [-config (--config) <config>] [-format (--format) <format>]\n" +
+                " -config (--config) <config> : config YAML file (default: javasee.yml)\n" +
+                " -format (--format) <format> : output format (text, junit, or json) (default:\n" +
+                "                               text)\n", stdout.getString());
     }
 
     @Test
@@ -182,10 +184,37 @@ public class CommandLineTest {
         var main = new Main(stdout.getStream(), stderr.getStream(), "javasee");
         assertEquals(Optional.empty(), main.parse(new String[] { "check", "-help" }));
 
-        assertEquals("Usage: javasee check [VAL ...] [-config (--config) <config>] [-format (--format) <format>] [-root (--root) <root>]\n" +
-                " -config (--config) <config> : config YAML file (default: javasee.yml)\n" +
-                " -format (--format) <format> : output format (default: text)\n" +
-                " -root (--root) <root>       : root directory\n", stdout.getString());
+        assertEquals("Usage: javasee check [VAL ...] [-baseline (--baseline) <file>] [-config (--config) <config>] [-file-timeout (--file-timeout) <seconds>] [-files-from (--files-from) <file>] [-fix (--fix)] [-format (--format) <format>] [-jfr (--jfr) <file>] [-pattern-stats (--pattern-stats) <file>] [-progress (--progress)] [-root (--root) <root>] [-shard (--shard) <I/N>] [-stdin (--stdin)] [-stdin-batch (--stdin-batch)] [-stdin-filename (--stdin-filename) <name>] [-write-baseline (--write-baseline)]\n" +
+                " -baseline (--baseline) <file>          : report only findings not recorded in\n" +
+                "                                          the baseline file\n" +
+                " -config (--config) <config>            : config YAML file (default:\n" +
+                "                                          javasee.yml)\n" +
+                " -file-timeout (--file-timeout)         : give up checking a file after the\n" +
+                " <seconds>                                seconds\n" +
+                " -files-from (--files-from) <file>      : read paths to check from file (- for\n" +
+                "                                          stdin)\n" +
+                " -fix (--fix)                           : rewrite the code of the issues with\n" +
+                "                                          the fix of the rules (default: false)\n" +
+                " -format (--format) <format>            : output format (default: text)\n" +
+                " -jfr (--jfr) <file>                    : write Java Flight Recorder events to\n" +
+                "                                          file\n" +
+                " -pattern-stats (--pattern-stats)       : load and save statistics deciding the\n" +
+                " <file>                                   order of patterns\n" +
+                " -progress (--progress)                 : report progress to stderr (default:\n" +
+                "                                          false)\n" +
+                " -root (--root) <root>                  : root directory\n" +
+                " -shard (--shard) <I/N>                 : check only I-th of N partitions of\n" +
+                "                                          the files\n" +
+                " -stdin (--stdin)                       : check source read from stdin\n" +
+                "                                          (default: false)\n" +
+                " -stdin-batch (--stdin-batch)           : check length-prefixed (name, source)\n" +
+                "                                          records read from stdin (default:\n" +
+                "                                          false)\n" +
+                " -stdin-filename (--stdin-filename)     : file name of source read from stdin\n" +
+                " <name>                                   (default: stdin.java)\n" +
+                " -write-baseline (--write-baseline)     : record the findings to the -baseline\n" +
+                "                                          file instead of reporting them\n" +
+                "                                          (default: false)\n", stdout.getString());
     }
 
     @Test
@@ -204,6 +233,7 @@ public class CommandLineTest {
                 "  Where command is one of:\n" +
                 "    init\n" +
                 "    check\n" +
+                "    merge\n" +
                 "    find\n" +
                 "    test\n" +
                 "    version\n" +
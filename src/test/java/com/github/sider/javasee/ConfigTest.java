@@ -45,4 +45,52 @@ public class ConfigTest {
             assertTrue(pattern instanceof AST.MethodCall);
         };
     }
+
+    @Test
+    public void testLoadRuleBudget() {
+        var yaml = "rules:\n" +
+                "  - id: greeting\n" +
+                "    message: Hello world\n" +
+                "    pattern: _.println(...)\n" +
+                "rule_budget:\n" +
+                "  max_share: 0.5\n" +
+                "  max_nanos_per_node: 5000\n";
+        Map<String, Object> map = new Yaml().load(yaml);
+
+        var config = Config.load(map,  new File("foo.yml"), new File("foo/bar/baz"));
+        assertEquals(0.5, config.ruleBudget.maxShare);
+        assertEquals(5000, config.ruleBudget.maxNanosPerNode);
+
+        assertThrows(Exceptions.UnknownKeysException.class, () -> RuleBudget.load(Map.of("max_time", 1)));
+        assertThrows(Exceptions.InvalidTypeException.class, () -> RuleBudget.load(Map.of("max_share", 2)));
+    }
+
+    @Test
+    public void testRuleBudgetDisablesSlowRule() {
+        Map<String, Object> map = new Yaml().load("rules:\n" +
+                "  - id: slow\n" +
+                "    message: slow\n" +
+                "    pattern: _.println(...)\n" +
+                "  - id: fast\n" +
+                "    message: fast\n" +
+                "    pattern: _.print(...)\n");
+        var rules = Config.load(map, new File("foo.yml"), null).rules;
+        var cost = new RuleBudget.Cost(new RuleBudget(0.8, 1000), rules);
+        var disabled = new java.util.ArrayList<String>();
+        cost.setListener((rule, reason) -> disabled.add(rule.id));
+
+        for(long i = 0; i < RuleBudget.MIN_NODES + 1024; i++) {
+            cost.record(0, 100);
+            cost.record(1, 100);
+        }
+        assertFalse(cost.isDisabled(0));
+
+        for(long i = 0; i < RuleBudget.MIN_NODES * 10; i++) {
+            cost.record(0, 2000);
+            cost.record(1, 100);
+        }
+        assertTrue(cost.isDisabled(0));
+        assertFalse(cost.isDisabled(1));
+        assertEquals(java.util.List.of("slow"), disabled);
+    }
 }
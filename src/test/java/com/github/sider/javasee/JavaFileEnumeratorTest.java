@@ -0,0 +1,187 @@
+package com.github.sider.javasee;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JavaFileEnumeratorTest {
+    private static void touch(File file) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.writeString(file.toPath(), "class " + file.getName().replace(".java", "") + " {}");
+    }
+
+    private static List<String> enumerate(File... paths) {
+        var result = new ArrayList<String>();
+        new JavaFileEnumerator(List.of(paths), null).forEach((path, script) -> result.add(path.getPath()));
+        return result;
+    }
+
+    @Test
+    public void testOverlappingRoots() {
+        TestHelper.mkTmpDir((dir) -> {
+            try {
+                touch(new File(dir, "src/A.java"));
+                touch(new File(dir, "src/main/B.java"));
+                touch(new File(dir, "src/main/C.txt"));
+                touch(new File(dir, "src/build/D.java"));
+
+                var src = new File(dir, "src");
+                var main = new File(dir, "src/main");
+                assertEquals(
+                        List.of(new File(src, "A.java").getPath(), new File(main, "B.java").getPath()),
+                        enumerate(src, main)
+                );
+                assertEquals(
+                        List.of(new File(src, "A.java").getPath(), new File(main, "B.java").getPath()),
+                        enumerate(main, src)
+                );
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+    }
+
+    @Test
+    public void testFilter() {
+        TestHelper.mkTmpDir((dir) -> {
+            try {
+                touch(new File(dir, "src/A.java"));
+                touch(new File(dir, "src/B.java"));
+                var result = new ArrayList<String>();
+                var counts = new ArrayList<Integer>();
+                var enumerator = new JavaFileEnumerator(List.of(new File(dir, "src")), null);
+                enumerator.setFilter(path -> !path.getName().equals("A.java"));
+                enumerator.setEnumerationListener((count, time) -> counts.add(count));
+                enumerator.forEach((path, script) -> result.add(path.getName()));
+                assertEquals(List.of("B.java"), result);
+                assertEquals(List.of(1), counts);
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+    }
+
+    @Test
+    public void testSymbolicLinkCycle() {
+        TestHelper.mkTmpDir((dir) -> {
+            try {
+                touch(new File(dir, "src/A.java"));
+                Files.createSymbolicLink(new File(dir, "src/loop").toPath(), new File(dir, "src").toPath());
+
+                assertEquals(List.of(new File(dir, "src/A.java").getPath()), enumerate(new File(dir, "src")));
+            } catch (IOException | UnsupportedOperationException e) {
+                fail(e);
+            }
+        });
+    }
+
+    @Test
+    public void testIgnoreFiles() {
+        TestHelper.mkTmpDir((dir) -> {
+            try {
+                touch(new File(dir, "src/A.java"));
+                touch(new File(dir, "src/Generated.java"));
+                touch(new File(dir, "src/gen/B.java"));
+                touch(new File(dir, "src/sub/Generated.java"));
+                touch(new File(dir, "src/sub/Keep.java"));
+                touch(new File(dir, "src/vendor/C.java"));
+                touch(new File(dir, "src/node_modules/D.java"));
+                Files.writeString(new File(dir, "src/.gitignore").toPath(), "# generated sources\nGenerated.java\n/gen/\n");
+                Files.writeString(new File(dir, "src/sub/.gitignore").toPath(), "*.java\n!Generated.java\n");
+                Files.writeString(new File(dir, "src/.javaseeignore").toPath(), "vendor/**\n");
+
+                var src = new File(dir, "src");
+                assertEquals(
+                        List.of(new File(src, "A.java").getPath(), new File(src, "sub/Generated.java").getPath()),
+                        enumerate(src)
+                );
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+    }
+
+    @Test
+    public void testIgnoreFileOfAncestorDirectory() {
+        TestHelper.mkTmpDir((dir) -> {
+            try {
+                new File(dir, ".git").mkdirs();
+                touch(new File(dir, "src/A.java"));
+                touch(new File(dir, "src/out/B.java"));
+                Files.writeString(new File(dir, ".gitignore").toPath(), "out/\n");
+
+                var src = new File(dir, "src");
+                assertEquals(List.of(new File(src, "A.java").getPath()), enumerate(src));
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+    }
+
+    @Test
+    public void testConfigExcludes() {
+        TestHelper.mkTmpDir((dir) -> {
+            try {
+                touch(new File(dir, "src/A.java"));
+                touch(new File(dir, "src/test/ATest.java"));
+                touch(new File(dir, "test/BTest.java"));
+
+                var config = new Config(List.of(), dir, List.of("src/test/"));
+                var result = new ArrayList<String>();
+                new JavaFileEnumerator(List.of(dir), config).forEach((path, script) -> result.add(path.getPath()));
+                assertEquals(List.of(new File(dir, "src/A.java").getPath(), new File(dir, "test/BTest.java").getPath()), result);
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+    }
+
+    @Test
+    public void testArchive() {
+        TestHelper.mkTmpDir((dir) -> {
+            try {
+                var archive = new File(dir, "lib-sources.jar");
+                try(var zip = new ZipOutputStream(new FileOutputStream(archive))) {
+                    zip.putNextEntry(new ZipEntry("com/example/"));
+                    zip.putNextEntry(new ZipEntry("com/example/A.java"));
+                    zip.write("class A { void f() { System.out.println(); } }".getBytes(StandardCharsets.UTF_8));
+                    zip.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+                    zip.write("Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+                    zip.putNextEntry(new ZipEntry("com/example/B.java"));
+                    zip.write("class B {}".getBytes(StandardCharsets.UTF_8));
+                }
+
+                var result = new ArrayList<String>();
+                new JavaFileEnumerator(List.of(archive), null).forEach((path, script) -> {
+                    result.add(path.getPath());
+                    assertNotNull(script.parseFile());
+                });
+                assertEquals(List.of(archive.getPath() + "!/com/example/A.java", archive.getPath() + "!/com/example/B.java"), result);
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+    }
+
+    @Test
+    public void testGlobToRegex() {
+        assertTrue("a/b/Foo.java".matches(ExcludeMatcher.toRegex("*.java")));
+        assertFalse("a/Foo.java".matches(ExcludeMatcher.toRegex("/*.java")));
+        assertTrue("a/x/y/b".matches(ExcludeMatcher.toRegex("a/**/b")));
+        assertTrue("a/b".matches(ExcludeMatcher.toRegex("a/**/b")));
+        assertTrue("a/b/c".matches(ExcludeMatcher.toRegex("a/**")));
+        assertTrue("Foo1.java".matches(ExcludeMatcher.toRegex("Foo[0-9].java")));
+        assertFalse("Foo/.java".matches(ExcludeMatcher.toRegex("Foo[!a].java")));
+        assertTrue("#x".matches(ExcludeMatcher.toRegex("\\#x")));
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.sider.javasee;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JavaFileTest {
+    @Test
+    public void testGetLine() {
+        TestHelper.mkTmpDir((dir) -> {
+            try {
+                var file = new File(dir, "A.java");
+                Files.writeString(file.toPath(), "class A {\r\n  void f() {}\r  int x;\n}");
+                var script = new JavaFile(file, () -> new JavaParser());
+                assertEquals("class A {", script.getLine(1));
+                assertEquals("  void f() {}", script.getLine(2));
+                assertEquals("  int x;", script.getLine(3));
+                assertEquals("}", script.getLine(4));
+                assertEquals(2, ((CompilationUnit)script.parseFile()).getType(0).getMembers().size());
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+    }
+
+    @Test
+    public void testLargeFile() {
+        TestHelper.mkTmpDir((dir) -> {
+            try {
+                var file = new File(dir, "Large.java");
+                var builder = new StringBuilder("class Large {\n");
+                for(int i = 0; builder.length() <= SourceReader.MAP_THRESHOLD; i++) {
+                    builder.append("  String s").append(i).append(" = \"あ\";\n");
+                }
+                builder.append("}\n");
+                Files.writeString(file.toPath(), builder);
+                assertTrue(file.length() > SourceReader.MAP_THRESHOLD);
+
+                var script = new JavaFile(file, () -> new JavaParser());
+                assertEquals(builder.toString(), script.getSource().toString());
+                assertEquals("  String s0 = \"あ\";", script.getLine(2));
+                assertEquals("}", script.getLine((int)builder.chars().filter(ch -> ch == '\n').count()));
+                assertNotNull(script.parseFile());
+            } catch (IOException e) {
+                fail(e);
+            }
+        });
+    }
+}
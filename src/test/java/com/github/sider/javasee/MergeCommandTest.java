@@ -0,0 +1,97 @@
+package com.github.sider.javasee;
+
+import com.github.sider.javasee.command.MergeCommand;
+import org.junit.jupiter.api.Test;
+import org.yaml.snakeyaml.Yaml;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MergeCommandTest {
+    private static String issue(String script, int line) {
+        return "{\"script\":\"" + script + "\", \"rule\":{\"id\":\"check-println\", \"message\":\"println() is\\tdetected\\n\", \"justifications\":[]}, " +
+                "\"location\":{\"start\":[" + line + ", 9], \"end\":[" + line + ", 48]}}";
+    }
+
+    private static File result(String... issues) throws Exception {
+        var file = File.createTempFile("javasee", ".json");
+        Files.writeString(file.toPath(), "{\"issues\":[" + String.join(", ", issues) + "], \"errors\":[]}");
+        return file;
+    }
+
+    @Test
+    public void testMergeDeduplicatesIssues() throws Exception {
+        var stdout = new StringPrintStream();
+        var stderr = new StringPrintStream();
+        var merge = new MergeCommand();
+        merge.paths = List.of(
+                result(issue("B.java", 3), issue("A.java", 10)).getPath(),
+                result(issue("A.java", 10), issue("A.java", 2)).getPath()
+        );
+
+        assertEquals(JavaSee.ExitStatus.FAILURE, merge.start(stdout.getStream(), stderr.getStream()));
+
+        Map<String, Object> merged = new Yaml().load(stdout.getString());
+        var issues = (List<Map<String, Object>>)merged.get("issues");
+        assertEquals(3, issues.size());
+        assertEquals("A.java", issues.get(0).get("script"));
+        assertEquals(List.of(2, 9), ((Map<String, Object>)issues.get(0).get("location")).get("start"));
+        assertEquals("A.java", issues.get(1).get("script"));
+        assertEquals("B.java", issues.get(2).get("script"));
+        assertEquals("println() is\tdetected\n", ((Map<String, Object>)issues.get(2).get("rule")).get("message"));
+    }
+
+    @Test
+    public void testMergeDisabledRules() throws Exception {
+        var stdout = new StringPrintStream();
+        var stderr = new StringPrintStream();
+        var merge = new MergeCommand();
+        var a = File.createTempFile("javasee", ".json");
+        Files.writeString(a.toPath(), "{\"issues\":[], \"errors\":[], \"disabled_rules\":[{\"id\":\"slow\", \"reason\":\"too slow\"}]}");
+        var b = File.createTempFile("javasee", ".json");
+        Files.writeString(b.toPath(), "{\"issues\":[], \"errors\":[], \"disabled_rules\":[{\"id\":\"slower\", \"reason\":\"too slow\"}, {\"id\":\"slow\", \"reason\":\"too slow\"}]}");
+        merge.paths = List.of(a.getPath(), b.getPath(), result().getPath());
+
+        assertEquals(JavaSee.ExitStatus.OK, merge.start(stdout.getStream(), stderr.getStream()));
+
+        Map<String, Object> merged = new Yaml().load(stdout.getString());
+        var disabledRules = (List<Map<String, Object>>)merged.get("disabled_rules");
+        assertEquals(2, disabledRules.size());
+        assertEquals("slow", disabledRules.get(0).get("id"));
+        assertEquals("too slow", disabledRules.get(0).get("reason"));
+        assertEquals("slower", disabledRules.get(1).get("id"));
+    }
+
+    @Test
+    public void testMergeStats() throws Exception {
+        var stdout = new StringPrintStream();
+        var stderr = new StringPrintStream();
+        var merge = new MergeCommand();
+        var a = File.createTempFile("javasee", ".json");
+        Files.writeString(a.toPath(), "{\"issues\":[], \"errors\":[], \"stats\":{\"scripts\":3, \"walk_time\":0.5}}");
+        var b = File.createTempFile("javasee", ".json");
+        Files.writeString(b.toPath(), "{\"issues\":[], \"errors\":[], \"stats\":{\"scripts\":4, \"walk_time\":0.25}}");
+        merge.paths = List.of(a.getPath(), b.getPath(), result().getPath());
+
+        assertEquals(JavaSee.ExitStatus.OK, merge.start(stdout.getStream(), stderr.getStream()));
+
+        Map<String, Object> merged = new Yaml().load(stdout.getString());
+        var stats = (Map<String, Object>)merged.get("stats");
+        assertEquals(7, ((Number)stats.get("scripts")).intValue());
+        assertEquals(0.75, ((Number)stats.get("walk_time")).doubleValue(), 1e-9);
+    }
+
+    @Test
+    public void testMergeWithoutIssues() throws Exception {
+        var stdout = new StringPrintStream();
+        var stderr = new StringPrintStream();
+        var merge = new MergeCommand();
+        merge.paths = List.of(result().getPath(), result().getPath());
+
+        assertEquals(JavaSee.ExitStatus.OK, merge.start(stdout.getStream(), stderr.getStream()));
+    }
+}
@@ -487,4 +487,86 @@ public class PatternParserTest {
         assertEquals(1, methodCall.parameters.size());
         assertSame(methodCall.parameters.get(0).getClass(), AST.LambdaPattern.class);
     }
+
+    @Test
+    public void testTypedExpression() throws Exception {
+        var e = parser("(_ : java.lang.String).equals(...)").WholeExpression();
+        assertSame(e.getClass(), AST.MethodCall.class);
+        var receiver = (AST.TypedExpression)((AST.MethodCall)e).receiver;
+        assertSame(receiver.expression.getClass(), AST.Wildcard.class);
+        assertEquals("java.lang.String", receiver.typeName);
+
+        e = parser("(_ : int[])").WholeExpression();
+        assertEquals("int[]", ((AST.TypedExpression)e).typeName);
+
+        e = parser("(_ ? _ : _)").WholeExpression();
+        assertSame(e.getClass(), AST.ConditionalExpression.class);
+    }
+
+    @Test
+    public void testStatementPattern() throws Exception {
+        var e = parser("try { ... } catch (Exception _) {}").WholePattern();
+        assertSame(e.getClass(), AST.TryStatement.class);
+        var tryStatement = (AST.TryStatement)e;
+        assertSame(tryStatement.body.statements.get(0).getClass(), AST.AnyStatements.class);
+        assertEquals("Exception", tryStatement.catchClauses.get(0).typeName);
+        assertNull(tryStatement.catchClauses.get(0).name);
+        assertTrue(tryStatement.catchClauses.get(0).body.statements.isEmpty());
+        assertNull(tryStatement.finallyBlock);
+
+        e = parser("synchronized (this) { ...; _.wait(); }").WholePattern();
+        assertSame(e.getClass(), AST.SynchronizedStatement.class);
+        assertSame(((AST.SynchronizedStatement)e).body.statements.get(1).getClass(), AST.ExpressionStatement.class);
+
+        e = parser("if (_ == null) return;").WholePattern();
+        assertSame(e.getClass(), AST.IfStatement.class);
+        assertNull(((AST.ReturnStatement)((AST.IfStatement)e).thenStatement).expression);
+
+        e = parser("System.exit(_)").WholePattern();
+        assertSame(e.getClass(), AST.MethodCall.class);
+    }
+
+    @Test
+    public void testDeclarationPattern() throws Exception {
+        var e = parser("public static _ _;").WholePattern();
+        assertSame(e.getClass(), AST.FieldDeclaration.class);
+        var field = (AST.FieldDeclaration)e;
+        assertEquals(List.of("public", "static"), field.modifiers);
+        assertNull(field.typeName);
+        assertNull(field.name);
+
+        e = parser("@org.junit.Test void _(...)").WholePattern();
+        assertSame(e.getClass(), AST.MethodDeclaration.class);
+        var method = (AST.MethodDeclaration)e;
+        assertEquals("org.junit.Test", method.annotations.get(0).name);
+        assertEquals("void", method.typeName);
+        assertNull(method.parameterTypes);
+        assertNull(method.body);
+
+        e = parser("String toString() {}").WholePattern();
+        assertEquals(List.of(), ((AST.MethodDeclaration)e).parameterTypes);
+
+        e = parser("@Deprecated").WholePattern();
+        assertSame(e.getClass(), AST.Annotation.class);
+    }
+
+    @Test
+    public void testAnnotationStartingWithPlaceholder() throws Exception {
+        var e = parser("@StringRes int _;").WholePattern();
+        assertSame(e.getClass(), AST.FieldDeclaration.class);
+        assertEquals("StringRes", ((AST.FieldDeclaration)e).annotations.get(0).name);
+
+        e = parser("@intercept.Before void _(...)").WholePattern();
+        assertSame(e.getClass(), AST.MethodDeclaration.class);
+        assertEquals("intercept.Before", ((AST.MethodDeclaration)e).annotations.get(0).name);
+
+        e = parser("@booleanFlag").WholePattern();
+        assertEquals("booleanFlag", ((AST.Annotation)e).name);
+
+        e = parser("@String").WholeExpression();
+        assertSame(e.getClass(), AST.StringWildcard.class);
+        e = parser("@int + @double").WholeExpression();
+        assertSame(((AST.BinaryExpression)e).lhs.getClass(), AST.IntWildcard.class);
+        assertSame(((AST.BinaryExpression)e).rhs.getClass(), AST.DoubleWildcard.class);
+    }
 }
@@ -0,0 +1,91 @@
+package com.github.sider.javasee;
+
+import com.github.javaparser.StaticJavaParser;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PatternStatsTest {
+    private static Rule rule() {
+        return Rule.load(Map.of(
+                "id", "print",
+                "pattern", List.of("_.printf(...)", "_.println(...)"),
+                "message", "print is detected"
+        ));
+    }
+
+    @Test
+    public void testOrderByHits() throws Exception {
+        var rules = List.of(rule());
+        var stats = new PatternStats(rules);
+        assertArrayEquals(new int[]{0, 1}, stats.order(0));
+
+        var unit = StaticJavaParser.parse("class A { void f() { System.out.println(1); System.out.println(2); } }");
+        var found = new ArrayList<Integer>();
+        for(int i = 0; i < 20; i++) {
+            RuleSet.match(null, rules, Config.contextPredicates(rules), null, stats, new NodePair(unit, null), (rule, pair) -> {
+                found.add(pair.node.getBegin().get().column);
+                return true;
+            });
+        }
+        assertArrayEquals(new int[]{1, 0}, stats.order(0));
+        assertEquals(40, found.size());
+
+        var path = Files.createTempFile("stats", ".tsv");
+        try {
+            stats.save(path);
+            var loaded = new PatternStats(rules);
+            loaded.load(path);
+            assertArrayEquals(new int[]{1, 0}, loaded.order(0));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testOperandOrder() throws Exception {
+        var rules = List.of(Rule.load(Map.of(
+                "id", "null-check",
+                "pattern", "_ == null",
+                "message", "comparison with null is detected"
+        )));
+        var stats = new PatternStats(rules);
+        assertFalse(stats.isSwapped(0, 0));
+
+        var unit = StaticJavaParser.parse("class A { boolean f(int x) { return x == 1 || x == 2 || x == 3 || this == null; } }");
+        var found = new ArrayList<Integer>();
+        for(int i = 0; i < 20; i++) {
+            RuleSet.match(null, rules, Config.contextPredicates(rules), null, stats, new NodePair(unit, null), (rule, pair) -> {
+                found.add(pair.node.getBegin().get().column);
+                return true;
+            });
+        }
+        // the right operand rejects, while the wildcard never does
+        assertTrue(stats.isSwapped(0, 0));
+        assertEquals(20, found.size());
+
+        // matching without statistics runs the operands in the written order and finds the same
+        var unordered = new ArrayList<Integer>();
+        RuleSet.match(null, rules, Config.contextPredicates(rules), null, null, new NodePair(unit, null), (rule, pair) -> {
+            unordered.add(pair.node.getBegin().get().column);
+            return true;
+        });
+        assertEquals(found.subList(0, 1), unordered);
+        assertFalse(new PatternStats(rules).isSwapped(0, 0));
+
+        var path = Files.createTempFile("stats", ".tsv");
+        try {
+            stats.save(path);
+            var loaded = new PatternStats(rules);
+            loaded.load(path);
+            assertTrue(loaded.isSwapped(0, 0));
+        } finally {
+            Files.delete(path);
+        }
+    }
+}
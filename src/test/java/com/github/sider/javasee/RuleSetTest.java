@@ -0,0 +1,349 @@
+package com.github.sider.javasee;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.sider.javasee.ast.AST;
+import com.github.sider.javasee.ast.PatternTable;
+import com.github.sider.javasee.ast.TypeResolver;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RuleSetTest {
+    private static final String YAML = "rules:\n" +
+            "  - id: check-println\n" +
+            "    pattern: _.println(...)\n" +
+            "    message: println() is detected\n" +
+            "  - id: check-null\n" +
+            "    pattern: \"null\"\n" +
+            "    message: null is detected\n";
+
+    private static final String SOURCE = "class A {\n" +
+            "  void f() {\n" +
+            "    System.out.println(null);\n" +
+            "    System.err.println(1);\n" +
+            "  }\n" +
+            "}\n";
+
+    private static List<String> analyze(RuleSet rules, String source) throws InterruptedException {
+        var result = new ArrayList<String>();
+        rules.analyze(source, (finding) -> result.add(finding.rule.id + ":" + finding.getBegin().line));
+        return result;
+    }
+
+    @Test
+    public void testAnalyze() throws Exception {
+        var rules = RuleSet.fromYaml(YAML);
+        assertEquals(List.of("check-println:3", "check-null:3", "check-println:4"), analyze(rules, SOURCE));
+
+        var result = new ArrayList<String>();
+        rules.analyze(StaticJavaParser.parse(SOURCE), (finding) -> result.add(finding.rule.id));
+        assertEquals(List.of("check-println", "check-null", "check-println"), result);
+    }
+
+    @Test
+    public void testSharedSubpatterns() throws Exception {
+        var rules = RuleSet.fromYaml("rules:\n" +
+                "  - id: out-println\n" +
+                "    pattern: System.out.println(...)\n" +
+                "    message: println() is detected\n" +
+                "  - id: out-print\n" +
+                "    pattern: System.out.print(...)\n" +
+                "    message: print() is detected\n" +
+                "  - id: out-println-null\n" +
+                "    pattern: System.out.println(null)\n" +
+                "    message: println(null) is detected\n");
+        var patterns = rules.getRules().stream().map(rule -> rule.patterns.get(0)).collect(Collectors.toList());
+        var table = PatternTable.intern(patterns);
+        var receivers = patterns.stream().map(pattern -> ((AST.MethodCall)pattern).receiver).collect(Collectors.toList());
+        assertSame(table.canonical(receivers.get(0)), table.canonical(receivers.get(1)));
+        assertSame(table.canonical(receivers.get(0)), table.canonical(receivers.get(2)));
+        assertNotSame(table.canonical(patterns.get(0)), table.canonical(patterns.get(2)));
+
+        assertEquals(List.of("out-println:3", "out-println-null:3"), analyze(rules, SOURCE));
+    }
+
+    @Test
+    public void testFromYamlSequence() throws Exception {
+        var rules = RuleSet.fromYaml("- id: check-null\n  pattern: \"null\"\n  message: null is detected\n");
+        assertEquals(List.of("check-null:3"), analyze(rules, SOURCE));
+    }
+
+    @Test
+    public void testStopBySink() throws Exception {
+        var rules = RuleSet.fromYaml(YAML);
+        var result = new ArrayList<String>();
+        rules.analyze(SOURCE, (finding) -> {
+            result.add(finding.rule.id);
+            return false;
+        });
+        assertEquals(List.of("check-println"), result);
+    }
+
+    @Test
+    public void testParseError() {
+        var rules = RuleSet.fromYaml(YAML);
+        assertThrows(Exceptions.SourceParseException.class, () -> rules.analyze("class {", (finding) -> true));
+    }
+
+    @Test
+    public void testConcurrentAnalysis() throws Exception {
+        var rules = RuleSet.fromYaml(YAML);
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            var futures = new ArrayList<Future<List<String>>>();
+            for(int i = 0; i < 64; i++) {
+                futures.add(executor.submit(() -> analyze(rules, SOURCE)));
+            }
+            for(var future:futures) {
+                assertEquals(List.of("check-println:3", "check-null:3", "check-println:4"), future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testBoundedQueue() throws Exception {
+        var rules = RuleSet.fromYaml(YAML);
+        var queue = new ArrayBlockingQueue<Finding>(1);
+        var producer = new Thread(() -> {
+            try {
+                rules.analyze(SOURCE, FindingSink.of(queue));
+            } catch (InterruptedException e) {
+                fail(e);
+            }
+        });
+        producer.start();
+        var result = new ArrayList<Finding>();
+        for(int i = 0; i < 3; i++) {
+            result.add(queue.take());
+        }
+        producer.join();
+        assertEquals(List.of("check-println", "check-null", "check-println"), result.stream().map(finding -> finding.rule.id).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testTypedPattern() throws Exception {
+        var rules = RuleSet.fromYaml("- id: string-equals\n  pattern: \"(_ : String).equals(...)\"\n  message: String#equals\n" +
+                "- id: collection-size\n  pattern: (_:java.util.Collection).size()\n  message: Collection#size\n");
+        var source = "import java.util.*;\n" +
+                "class A {\n" +
+                "  Object o;\n" +
+                "  boolean f(String s, List<String> list, Map<String, String> map) {\n" +
+                "    return s.equals(\"a\") || o.equals(s) || list.size() == map.size();\n" +
+                "  }\n" +
+                "}\n";
+        assertEquals(List.of("string-equals:5", "collection-size:5"), analyze(rules, source));
+    }
+
+    @Test
+    public void testTypedPatternInParallel() throws Exception {
+        var rules = RuleSet.fromYaml("- id: collection-size\n  pattern: (_:java.util.Collection).size()\n  message: Collection#size\n");
+        var source = "import java.util.*;\n" +
+                "class A {\n" +
+                "  int f(List<String> list, Set<String> set, String s) {\n" +
+                "    return list.size() + set.size() + s.length();\n" +
+                "  }\n" +
+                "}\n";
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            var futures = new ArrayList<Future<List<String>>>();
+            for(int i = 0; i < 64; i++) {
+                futures.add(executor.submit(() -> analyze(rules, source)));
+            }
+            for(var future:futures) {
+                assertEquals(List.of("collection-size:4", "collection-size:4"), future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testTypedPatternClosedWhileResolving() throws Exception {
+        var rules = RuleSet.fromYaml("- id: collection-size\n  pattern: (_:java.util.Collection).size()\n  message: Collection#size\n").getRules();
+        var source = "import java.util.*;\n" +
+                "class A {\n" +
+                "  int f(List<String> list, String s) {\n" +
+                "    return list.size() + s.length();\n" +
+                "  }\n" +
+                "}\n";
+        var ruleSets = List.of(
+                RuleSet.of(rules, new TypeResolver(List.of(), List.of())),
+                RuleSet.of(rules, new TypeResolver(List.of(), List.of()))
+        );
+        var executor = Executors.newFixedThreadPool(8);
+        try {
+            var futures = new ArrayList<Future<List<String>>>();
+            for(int i = 0; i < 64; i++) {
+                var ruleSet = ruleSets.get(i % 2);
+                futures.add(executor.submit(() -> analyze(ruleSet, source)));
+                // the other resolver keeps resolving while the first one releases its solvers
+                if(i % 8 == 0) ruleSets.get(0).close();
+            }
+            for(var future:futures) {
+                assertEquals(List.of("collection-size:4"), future.get());
+            }
+        } finally {
+            executor.shutdown();
+            ruleSets.forEach(RuleSet::close);
+        }
+        assertEquals(List.of("collection-size:4"), analyze(ruleSets.get(0), source));
+    }
+
+    @Test
+    public void testWhere() throws Exception {
+        var rules = RuleSet.fromYaml("- id: small-index\n" +
+                "  pattern:\n" +
+                "    - subject: $list.get($i)\n" +
+                "      where:\n" +
+                "        list: \"[a-z]+List\"\n" +
+                "        i: {min: 0, max: 9}\n" +
+                "  message: get\n" +
+                "- id: negative-offset\n" +
+                "  pattern:\n" +
+                "    - subject: offset($n)\n" +
+                "      where:\n" +
+                "        n: {max: -1}\n" +
+                "  message: offset\n" +
+                "- id: string-arg\n" +
+                "  pattern:\n" +
+                "    - subject: print($s)\n" +
+                "      where:\n" +
+                "        s: {type: String}\n" +
+                "  message: print\n");
+        var source = "class A {\n" +
+                "  void f(java.util.List<String> userList, java.util.List<String> users, String s) {\n" +
+                "    userList.get(1);\n" +
+                "    userList.get(10);\n" +
+                "    users.get(1);\n" +
+                "    print(s);\n" +
+                "    print(1);\n" +
+                "    offset(-5);\n" +
+                "    offset(+5);\n" +
+                "    offset(- -5);\n" +
+                "    offset(~5);\n" +
+                "  }\n" +
+                "}\n";
+        assertEquals(List.of("small-index:3", "string-arg:6", "negative-offset:8"), analyze(rules, source));
+    }
+
+    @Test
+    public void testBackReference() throws Exception {
+        var rules = RuleSet.fromYaml("- id: self-compare\n" +
+                "  pattern: $a == $a\n" +
+                "  message: compare\n" +
+                "- id: self-equals\n" +
+                "  pattern: $a.equals($a)\n" +
+                "  message: equals\n" +
+                "- id: dollar-compare\n" +
+                "  pattern: $$a == _\n" +
+                "  message: dollar\n");
+        var source = "class A {\n" +
+                "  void f(int a, int b, int $a, String s, String t) {\n" +
+                "    if(a == a) {}\n" +
+                "    if(a == b) {}\n" +
+                "    if($a == b) {}\n" +
+                "    s.equals(s);\n" +
+                "    s.equals(t);\n" +
+                "    s.trim().equals(s.trim());\n" +
+                "    s.trim().equals(s.strip());\n" +
+                "  }\n" +
+                "}\n";
+        assertEquals(List.of("self-compare:3", "dollar-compare:5", "self-equals:6", "self-equals:8"), analyze(rules, source));
+    }
+
+    @Test
+    public void testStatementAndDeclaration() throws Exception {
+        var rules = RuleSet.fromYaml("- id: empty-catch\n" +
+                "  pattern: try { ... } catch (Exception _) {}\n" +
+                "  message: catch\n" +
+                "- id: wait-in-synchronized\n" +
+                "  pattern: synchronized (_) { ... _.wait(); ... }\n" +
+                "  message: wait\n" +
+                "- id: mutable-static\n" +
+                "  pattern: public static _ _;\n" +
+                "  message: field\n" +
+                "- id: ignored-test\n" +
+                "  pattern: \"@Ignore void _(...)\"\n" +
+                "  message: test\n");
+        var source = "class A {\n" +
+                "  public static java.util.List<String> names;\n" +
+                "  public static final int MAX = 1;\n" +
+                "  @Ignore void f(Object lock) throws Exception {\n" +
+                "    try { g(); } catch (Exception e) {}\n" +
+                "    try { g(); } catch (RuntimeException e) {}\n" +
+                "    try { g(); } catch (Exception e) { e.printStackTrace(); }\n" +
+                "    synchronized (lock) { g(); lock.wait(); }\n" +
+                "    synchronized (lock) { g(); }\n" +
+                "  }\n" +
+                "}\n";
+        assertEquals(List.of("mutable-static:2", "mutable-static:3", "ignored-test:4", "empty-catch:5", "wait-in-synchronized:8"), analyze(rules, source));
+    }
+
+    @Test
+    public void testBacktrackingUnbindsMetavariables() throws Exception {
+        var rules = RuleSet.fromYaml("- id: foo-then-bar\n" +
+                "  pattern: \"{ ...; foo($x); bar($x); }\"\n" +
+                "  message: block\n" +
+                "- id: log-then-warn\n" +
+                "  pattern: \"try { ... } catch (_ _) { log($x); } catch (_ _) { warn($x); }\"\n" +
+                "  message: try\n");
+        var source = "class A {\n" +
+                "  void f() {\n" +
+                "    { foo(a); foo(b); bar(b); }\n" +
+                "    { foo(a); foo(b); bar(a); }\n" +
+                "    try { g(); } catch (IOException e) { log(a); } catch (IllegalStateException e) { log(b); } catch (Exception e) { warn(b); }\n" +
+                "    try { g(); } catch (IOException e) { log(a); } catch (Exception e) { warn(b); }\n" +
+                "  }\n" +
+                "}\n";
+        assertEquals(List.of("foo-then-bar:3", "log-then-warn:5"), analyze(rules, source));
+    }
+
+    @Test
+    public void testContext() throws Exception {
+        var rules = RuleSet.fromYaml("- id: sleep-in-loop\n" +
+                "  pattern:\n" +
+                "    - subject: Thread.sleep(_)\n" +
+                "      inside: [for (...), while (_)]\n" +
+                "      not-inside: \"@Test void _(...)\"\n" +
+                "  message: sleep\n" +
+                "- id: unclosed\n" +
+                "  pattern:\n" +
+                "    - subject: try { ... }\n" +
+                "      has: _.open()\n" +
+                "      not-inside: synchronized (_) { ... }\n" +
+                "  message: open\n");
+        var source = "class A {\n" +
+                "  void f(java.util.List<String> xs) throws Exception {\n" +
+                "    for (var x : xs) { Thread.sleep(1); }\n" +
+                "    Thread.sleep(1);\n" +
+                "    while (true) { if (xs.isEmpty()) Thread.sleep(1); }\n" +
+                "    try { file.open(); } finally {}\n" +
+                "    try { file.close(); } finally {}\n" +
+                "    synchronized (this) { try { file.open(); } finally {} }\n" +
+                "  }\n" +
+                "  @Test void g() throws Exception {\n" +
+                "    for (;;) { Thread.sleep(1); }\n" +
+                "  }\n" +
+                "}\n";
+        assertEquals(List.of("sleep-in-loop:3", "sleep-in-loop:5", "unclosed:6"), analyze(rules, source));
+
+        // without summary, contexts are tested by walking the tree
+        var unit = StaticJavaParser.parse(source);
+        var lines = new ArrayList<String>();
+        for(var rule:rules.getRules()) {
+            new NodePair(unit, null).eachSubPair(pair -> {
+                if(rule.patterns.get(0).matches(pair)) lines.add(rule.id + ":" + pair.node.getBegin().get().line);
+            });
+        }
+        assertEquals(List.of("sleep-in-loop:3", "sleep-in-loop:5", "unclosed:6"), lines);
+    }
+}
@@ -154,4 +154,67 @@ public class RuleTest {
             );
         });
     }
+
+    @Test
+    public void testLoadWhere() {
+        var rule = Rule.load(
+                mapOf(
+                        kv("id", "foo.bar.baz"),
+                        kv("pattern", List.of(mapOf(
+                                kv("subject", "$x.get($i)"),
+                                kv("where", mapOf(
+                                        kv("x", (Object)"[a-z]+List"),
+                                        kv("$i", Map.of("min", 0, "max", 9))
+                                ))
+                        ))),
+                        kv("message", "message1")
+                )
+        );
+        var pattern = (AST.Constrained)rule.patterns.get(0);
+        assertEquals(2, pattern.constraints.size());
+        assertTrue(pattern.expression instanceof AST.MethodCall);
+
+        assertThrows(Exceptions.InvalidTypeException.class, () -> Rule.load(
+                mapOf(
+                        kv("id", "foo.bar.baz"),
+                        kv("pattern", List.of(Map.of("subject", "$x.get(_)", "where", Map.of("y", "a")))),
+                        kv("message", "message1")
+                )
+        ));
+        assertThrows(Exceptions.InvalidTypeException.class, () -> Rule.load(
+                mapOf(
+                        kv("id", "foo.bar.baz"),
+                        kv("pattern", List.of(Map.of("subject", "$x.get(_)", "where", "x"))),
+                        kv("message", "message1")
+                )
+        ));
+    }
+
+    @Test
+    public void testLoadContext() throws Exception {
+        var rule = Rule.load(
+                mapOf(
+                        kv("id", "foo.bar.baz"),
+                        kv("pattern", List.of(mapOf(
+                                kv("subject", "_.close()"),
+                                kv("inside", List.of("for (...)", "while (_)")),
+                                kv("not-inside", "try { ... } finally { ... }")
+                        ))),
+                        kv("message", "message1")
+                )
+        );
+        var pattern = (AST.Contextual)rule.patterns.get(0);
+        assertTrue(pattern.pattern instanceof AST.MethodCall);
+        assertEquals(2, pattern.inside.size());
+        assertTrue(pattern.notInside.get(0) instanceof AST.TryStatement);
+        assertTrue(pattern.has.isEmpty());
+
+        assertThrows(Exceptions.InvalidTypeException.class, () -> Rule.load(
+                mapOf(
+                        kv("id", "foo.bar.baz"),
+                        kv("pattern", List.of(Map.of("subject", "_.close()", "has", 1))),
+                        kv("message", "message1")
+                )
+        ));
+    }
 }
@@ -0,0 +1,77 @@
+package com.github.sider.javasee;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SuppressionsTest {
+    private static final String RULES = "- id: no-println\n" +
+            "  pattern: _.println(...)\n" +
+            "  message: println\n" +
+            "- id: no-null\n" +
+            "  pattern: \"null\"\n" +
+            "  message: null literal\n";
+
+    private static List<String> analyze(String source) throws InterruptedException {
+        var result = new ArrayList<String>();
+        RuleSet.fromYaml(RULES).analyze(source, (finding) -> result.add(finding.rule.id + ":" + finding.getBegin().line));
+        return result;
+    }
+
+    @Test
+    public void testComment() throws Exception {
+        var source = "class A {\n" +
+                "  void f() {\n" +
+                "    System.out.println(null); // javasee:ignore no-println\n" +
+                "    // javasee:ignore no-null, no-println -- accepted\n" +
+                "    System.out.println(\n" +
+                "        null);\n" +
+                "    System.out.println(null);\n" +
+                "    /* javasee:ignore */\n" +
+                "\n" +
+                "    System.out.println(null);\n" +
+                "  }\n" +
+                "}\n";
+        assertEquals(List.of("no-null:3", "no-println:7", "no-null:7", "no-println:10", "no-null:10"), analyze(source));
+    }
+
+    @Test
+    public void testSuppressWarnings() throws Exception {
+        var source = "class A {\n" +
+                "  @SuppressWarnings({\"unchecked\", \"javasee:no-null\"})\n" +
+                "  void f() {\n" +
+                "    System.out.println(null);\n" +
+                "  }\n" +
+                "  @SuppressWarnings(value = \"javasee\")\n" +
+                "  void g() {\n" +
+                "    System.out.println(null);\n" +
+                "  }\n" +
+                "  void h() {\n" +
+                "    System.out.println(null);\n" +
+                "  }\n" +
+                "}\n";
+        assertEquals(List.of("no-println:4", "no-println:11", "no-null:11"), analyze(source));
+    }
+
+    @Test
+    public void testFile() throws Exception {
+        var source = "// javasee:ignore-file no-println\n" +
+                "@SuppressWarnings(\"javasee:no-null\")\n" +
+                "class A {\n" +
+                "  void f() {\n" +
+                "    System.out.println(null);\n" +
+                "  }\n" +
+                "}\n";
+        assertEquals(List.of(), analyze(source));
+
+        var unit = com.github.javaparser.StaticJavaParser.parse(source);
+        var suppressions = Suppressions.of(unit);
+        assertTrue(suppressions.suppressesFile("no-println"));
+        assertTrue(suppressions.suppressesFile("no-null"));
+        assertFalse(suppressions.suppressesFile("other"));
+        assertSame(suppressions, Suppressions.of(unit));
+    }
+}
@@ -4,9 +4,16 @@ import com.github.sider.javasee.command.TestCommand;
 import org.junit.jupiter.api.Test;
 import org.yaml.snakeyaml.Yaml;
 
+import org.w3c.dom.Element;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -180,6 +187,38 @@ public class TestCommandTest {
                 "    if System.out.println(123)\n", stderr.getString());
     }
 
+    @Test
+    public void testTestPatternsInOrder() throws Exception {
+        var yaml = new StringBuilder("rules:\n");
+        for(int i = 0; i < 50; i++) {
+            yaml.append("  - id: rule" + i + "\n" +
+                    "    message: Hello world\n" +
+                    "    pattern: _.println(...)\n" +
+                    "    tests:\n" +
+                    "      match:\n" +
+                    "        - \"import java.io.*; class A { void f() { System.out.println(); } }\"\n" +
+                    "        - \"int x = 1; System.out.println(x);\"\n" +
+                    "        - System.out.print(" + i + ")\n");
+        }
+
+        var config = config(yaml.toString());
+
+        TestCommand test = new TestCommand();
+
+        test.validateRulePatterns(stdout.getStream(), stderr.getStream(), config.rules);
+
+        assertTrue(test.isFailed());
+        var expected = new StringBuilder("Checking rule patterns...\n");
+        for(int i = 0; i < 50; i++) {
+            expected.append("\u001B[31m  rule" + i + "\u001B[0m:\t3rd match example didn't match with any pattern\n");
+        }
+        expected.append("Tested 50 rules with 150 tests\n" +
+                "  0 examples found which should not match, but matched\n" +
+                "  50 examples found which should match, but didn't\n" +
+                "  0 errors reported\n");
+        assertEquals(expected.toString(), stdout.getString());
+    }
+
     @Test
     public void testRunSuccess() {
         TestHelper.mkTmpDir((dir) -> {
@@ -255,4 +294,130 @@ public class TestCommandTest {
                     "  0 errors reported\n", stdout.getString());
         });
     }
+
+    @Test
+    public void testRunWithTypes() {
+        TestHelper.mkTmpDir((dir) -> {
+            try {
+                var sources = new File(dir, "src/com/example");
+                assertTrue(sources.mkdirs());
+                Files.writeString(new File(sources, "Money.java").toPath(), "package com.example;\n" +
+                        "public class Money {\n" +
+                        "  public Money add(Money other) { return this; }\n" +
+                        "}\n");
+                var yaml = "types:\n" +
+                        "  source_roots: " + new File(dir, "src").getAbsolutePath() + "\n" +
+                        "rules:\n" +
+                        "  - id: money-add\n" +
+                        "    message: Money#add\n" +
+                        "    pattern: (_:com.example.Money).add(_)\n" +
+                        "    tests:\n" +
+                        "      match:\n" +
+                        "        - \"package p; class A { Object f(com.example.Money m) { return m.add(m); } }\"\n" +
+                        "      unmatch:\n" +
+                        "        - \"package p; class A { Object f(java.math.BigDecimal m) { return m.add(m); } }\"\n";
+                var yamlPath = new File(dir, "javasee.yml");
+                Files.writeString(yamlPath.toPath(), yaml);
+                TestCommand test = new TestCommand();
+                test.optionConfig = yamlPath.toString();
+
+                var result = test.start(stdout.getStream(), stderr.getStream());
+
+                assertEquals(JavaSee.ExitStatus.OK, result, stdout.getString());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+    }
+
+    private TestCommand reportCommand(File dir, String format) throws IOException {
+        var yaml = "rules:\n" +
+                "  - id: greeting\n" +
+                "    message: Hello world\n" +
+                "    pattern: _.println(...)\n" +
+                "    tests:\n" +
+                "      match:\n" +
+                "        - System.out.println(1 < 2 && true)\n" +
+                "        - System.out.print(123)\n" +
+                "      unmatch:\n" +
+                "        - System.out.print(123)\n" +
+                "  - id: broken\n" +
+                "    message: Hello world\n" +
+                "    pattern: _.println(...)\n" +
+                "    tests:\n" +
+                "      match:\n" +
+                "        - if System.out.println(123)\n";
+        var yamlPath = new File(dir, "javasee.yml");
+        Files.writeString(yamlPath.toPath(), yaml);
+        TestCommand test = new TestCommand();
+        test.optionConfig = yamlPath.toString();
+        test.optionFormat = format;
+        return test;
+    }
+
+    @Test
+    public void testRunJUnit() {
+        TestHelper.mkTmpDir((dir) -> {
+            try {
+                var result = reportCommand(dir, "junit").start(stdout.getStream(), stderr.getStream());
+                assertEquals(JavaSee.ExitStatus.FAILURE, result);
+
+                var document = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                        .parse(new ByteArrayInputStream(stdout.getString().getBytes(StandardCharsets.UTF_8)));
+                var suites = document.getElementsByTagName("testsuite");
+                assertEquals(2, suites.getLength());
+                var greeting = (Element)suites.item(0);
+                assertEquals("greeting", greeting.getAttribute("name"));
+                assertEquals("3", greeting.getAttribute("tests"));
+                assertEquals("1", greeting.getAttribute("failures"));
+                assertEquals("0", greeting.getAttribute("errors"));
+                assertFalse(greeting.getAttribute("time").isEmpty());
+
+                var cases = greeting.getElementsByTagName("testcase");
+                assertEquals("match example 1", ((Element)cases.item(0)).getAttribute("name"));
+                assertEquals(0, ((Element)cases.item(0)).getElementsByTagName("failure").getLength());
+                assertEquals("match example 2", ((Element)cases.item(1)).getAttribute("name"));
+                assertEquals("System.out.print(123)", ((Element)cases.item(1)).getElementsByTagName("failure").item(0).getTextContent());
+                assertEquals("unmatch example 1", ((Element)cases.item(2)).getAttribute("name"));
+
+                var broken = (Element)suites.item(1);
+                assertEquals("1", broken.getAttribute("errors"));
+                assertEquals("if System.out.println(123)", broken.getElementsByTagName("error").item(0).getTextContent());
+                assertEquals("Checking rule id uniqueness...\n", stderr.getString());
+            } catch (Exception e) {
+                fail(e);
+            }
+        });
+    }
+
+    @Test
+    public void testRunJSON() {
+        TestHelper.mkTmpDir((dir) -> {
+            try {
+                var result = reportCommand(dir, "json").start(stdout.getStream(), stderr.getStream());
+                assertEquals(JavaSee.ExitStatus.FAILURE, result);
+
+                Map<String, Object> json = new Yaml().load(stdout.getString());
+                var rules = (List<Map<String, Object>>)json.get("rules");
+                assertEquals("greeting", rules.get(0).get("id"));
+                assertEquals(1, rules.get(0).get("failures"));
+                var examples = (List<Map<String, Object>>)rules.get(0).get("examples");
+                assertEquals(List.of("match", 2, true, false, false),
+                        List.of(examples.get(1).get("kind"), examples.get(1).get("index"), examples.get(1).get("expected"), examples.get(1).get("actual"), examples.get(1).get("passed")));
+                assertEquals("System.out.println(1 < 2 && true)", examples.get(0).get("source"));
+                assertTrue(rules.get(0).get("time") instanceof Double);
+
+                var error = ((List<Map<String, Object>>)rules.get(1).get("examples")).get(0);
+                assertTrue(error.containsKey("error"));
+                assertEquals(false, error.get("passed"));
+
+                var summary = (Map<String, Object>)json.get("summary");
+                assertEquals(3, summary.get("tests"));
+                assertEquals(1, summary.get("false_negatives"));
+                assertEquals(1, summary.get("errors"));
+            } catch (Exception e) {
+                fail(e);
+            }
+        });
+    }
 }